@@ -13,30 +13,40 @@ import org.apache.commons.lang.StringUtils;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.annotation.Nullable;
 
 @SuppressWarnings("rawtypes")
 public class ActiveNotifier implements FineGrainedNotifier {
-    private static final Logger logger = Logger.getLogger(ActiveNotifier.class.getName());
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.CHANGES);
 
     HipChatNotifier notifier;
 
-    
+    // settings snapshot taken once for the event being notified
+    HipChatConfig config;
+
+    // observes deliveries of replays and test runs, null otherwise
+    DeliveryListener listener;
+
     public ActiveNotifier(HipChatNotifier notifier) {
+        this(notifier, null);
+    }
+
+    public ActiveNotifier(HipChatNotifier notifier, DeliveryListener listener) {
         super();
         this.notifier = notifier;
+        this.config = notifier.getConfig();
+        this.listener = listener;
     }
 
     private HipChatService getHipChat(AbstractBuild r) {
-        AbstractProject<?, ?> project = r.getProject();
-        String projectRoom = notifier.getRoom();
-        return notifier.newHipChatService(projectRoom);
+        return notifier.newHipChatService(config, config.getRooms(), listener);
     }
 
     public void deleted(AbstractBuild r) {
@@ -49,7 +59,7 @@ public class ActiveNotifier implements FineGrainedNotifier {
         if (changes != null) {
             notifyStart(build, changes);
         } else if (cause != null) {
-            MessageBuilder message = new MessageBuilder(notifier, build);
+            MessageBuilder message = new MessageBuilder(config, build);
             message.append(cause.getShortDescription());
             notifyStart(build, message.appendOpenLink().toString());
         } else {
@@ -58,7 +68,7 @@ public class ActiveNotifier implements FineGrainedNotifier {
     }
 
     private void notifyStart(AbstractBuild build, String message) {
-        getHipChat(build).publish(message, "green");
+        publish(build, true, message, "green");
     }
 
     public void finalized(AbstractBuild r) {
@@ -68,11 +78,70 @@ public class ActiveNotifier implements FineGrainedNotifier {
 
         AbstractProject<?, ?> project = r.getProject();
         Result result = r.getResult();
-            if (!notifier.getSmartNotifications() || checkSmartNotify(r)) {
-                getHipChat(r).publish(getBuildStatusMessage(r), getBuildColor(r));
+            if (!config.getSmartNotifications() || checkSmartNotify(r)) {
+                publish(r, false, getBuildStatusMessage(r), getBuildColor(r));
             }
     }
 
+    /**
+     * Publishes to the rooms picked by the global routing rules, or to the
+     * job room when no rule matches.
+     */
+    private void publish(AbstractBuild build, boolean started, String message, String color) {
+        RoutingRules rules = config.getRoutingRules();
+        List<RoutingRule> routes = rules.isEmpty()
+                ? Collections.<RoutingRule>emptyList()
+                : rules.match(RoutingContext.forBuild(build, started));
+        if (routes.isEmpty()) {
+            getHipChat(build).publish(message, color);
+            return;
+        }
+
+        Set<String> published = new HashSet<String>();
+        for (RoutingRule route : routes) {
+            List<String> rooms = new ArrayList<String>();
+            for (String room : route.getRooms()) {
+                if (RoutingRule.JOB_ROOM.equals(room)) {
+                    for (String jobRoom : config.getRooms()) {
+                        if (published.add(jobRoom)) {
+                            rooms.add(jobRoom);
+                        }
+                    }
+                } else if (published.add(room)) {
+                    rooms.add(room);
+                }
+            }
+            if (rooms.isEmpty()) {
+                continue;
+            }
+            HipChatService service = notifier.newHipChatService(config, rooms, listener);
+            String routeColor = route.getColor() != null ? route.getColor() : color;
+            if (route.getNotify() != null) {
+                service.publish(message, routeColor, route.getNotify());
+            } else {
+                service.publish(message, routeColor);
+            }
+        }
+    }
+
+    /**
+     * Posts an in-progress update for a running build to the given rooms.
+     *
+     * @param percent percent of the estimated duration elapsed, or -1 if unknown
+     * @param stage   stage announced in the build log, or null
+     */
+    public void progress(AbstractBuild build, List<String> rooms, int percent, String stage) {
+        MessageBuilder message = new MessageBuilder(config, build);
+        message.append("In progress");
+        if (stage != null) {
+            message.append(": ").append(Util.escape(stage));
+        }
+        if (percent >= 0) {
+            message.append(" (about ").append(percent).append("% of the estimated duration)");
+        }
+        notifier.newHipChatService(config, rooms, listener).publish(message.appendOpenLink().toString(), "gray", false);
+    }
+
     Boolean checkSmartNotify(AbstractBuild r) {
         return r.getResult() != Result.SUCCESS || previousBuildWasNotSuccessful(r);
     }
@@ -84,7 +153,7 @@ public class ActiveNotifier implements FineGrainedNotifier {
 
     String getChanges(AbstractBuild r) {
         if (!r.hasChangeSetComputed()) {
-            logger.info("No change set computed...");
+            logger.debug("No change set computed for {0}", r.getFullDisplayName());
             return null;
         }
         ChangeLogSet changeSet = r.getChangeSet();
@@ -92,19 +161,22 @@ public class ActiveNotifier implements FineGrainedNotifier {
         Set<AffectedFile> files = new HashSet<AffectedFile>();
         for (Object o : changeSet.getItems()) {
             Entry entry = (Entry) o;
-            logger.info("Entry " + o);
             entries.add(entry);
             files.addAll(entry.getAffectedFiles());
         }
         if (entries.isEmpty()) {
-            logger.info("Empty change...");
+            logger.debug("Empty change set for {0}", r.getFullDisplayName());
             return null;
         }
+        logger.debug("{0} entries changing {1} files for {2}", entries.size(), files.size(), r.getFullDisplayName());
+        MentionResolver mentions = MentionResolver.get();
         Set<String> authors = new HashSet<String>();
         for (Entry entry : entries) {
-            authors.add(entry.getAuthor().getDisplayName());
+            User author = entry.getAuthor();
+            String mention = mentions.resolve(author);
+            authors.add(mention != null ? "@" + mention : author.getDisplayName());
         }
-        MessageBuilder message = new MessageBuilder(notifier, r);
+        MessageBuilder message = new MessageBuilder(config, r);
         message.append("Started by changes from ");
         message.append(StringUtils.join(authors, ", "));
         message.append(" (");
@@ -125,7 +197,7 @@ public class ActiveNotifier implements FineGrainedNotifier {
     }
 
     String getBuildStatusMessage(AbstractBuild r) {
-        MessageBuilder message = new MessageBuilder(notifier, r);
+        MessageBuilder message = new MessageBuilder(config, r);
         message.appendStatusMessage();
         message.appendTestResults();
         message.appendBlameUpstream();
@@ -135,11 +207,15 @@ public class ActiveNotifier implements FineGrainedNotifier {
 
     public static class MessageBuilder {
         private StringBuffer message;
-        private HipChatNotifier notifier;
+        private HipChatConfig config;
         private AbstractBuild build;
 
         public MessageBuilder(HipChatNotifier notifier, AbstractBuild build) {
-            this.notifier = notifier;
+            this(notifier.getConfig(), build);
+        }
+
+        public MessageBuilder(HipChatConfig config, AbstractBuild build) {
+            this.config = config;
             this.message = new StringBuffer();
             this.build = build;
             startMessage();
@@ -182,7 +258,7 @@ public class ActiveNotifier implements FineGrainedNotifier {
         }
 
         public MessageBuilder appendOpenLink() {
-            String url = notifier.getBuildServerUrl() + build.getUrl();
+            String url = config.getBuildServerUrl() + build.getUrl();
             message.append(" (<a href='").append(url).append("'>Open</a>)");
             return this;
         }
@@ -208,11 +284,16 @@ public class ActiveNotifier implements FineGrainedNotifier {
           UpstreamFailureCause failureCause = new UpstreamFailureCause(build);
           Set<User> toBlame = failureCause.getUpstream();
           if (!toBlame.isEmpty()) {
+            final MentionResolver mentions = MentionResolver.get();
             message.append(" changes by: ");
             message.append(StringUtils.join(Collections2.transform(toBlame, new Function<User, String>() {
               public String apply(@Nullable User input)
               {
                 if (input != null) {
+                  String mention = mentions.resolve(input);
+                  if (mention != null) {
+                    return "@" + mention;
+                  }
                   String user = input.getId();
                   if (user.indexOf(' ') != -1) {
                     // dealing with long name as id, bad
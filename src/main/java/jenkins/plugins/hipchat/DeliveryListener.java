@@ -0,0 +1,14 @@
+package jenkins.plugins.hipchat;
+
+/**
+ * Observes each message posted by a {@link StandardHipChatService}.
+ */
+public interface DeliveryListener {
+
+    /**
+     * @param room         the room posted to
+     * @param elapsedNanos time spent on the request
+     * @param success      false if the request failed or HipChat returned an error status
+     */
+    void delivered(String room, long elapsedNanos, boolean success);
+}
@@ -5,35 +5,101 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.Publisher;
 import net.sf.json.JSONObject;
 
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.StaplerRequest;
 
+import java.util.regex.PatternSyntaxException;
+
     public class DescriptorImpl extends BuildStepDescriptor<Publisher> {
+        private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.CONFIG);
+
+        // persisted form of the settings, only written under the descriptor lock
         private String token;
         private String room;
         private String buildServerUrl;
         private String sendAs;
         private boolean smartNotifications;
         private boolean startNotification;
+        private String routingRules;
+        private int progressInterval = HipChatConfig.DEFAULT_PROGRESS_INTERVAL_MINUTES;
+        private int progressThreshold = HipChatConfig.DEFAULT_PROGRESS_THRESHOLD;
+        private String dailyDigestRooms;
+        private String weeklyDigestRooms;
+        private String userListToken;
+
+        private transient volatile HipChatConfig config = HipChatConfig.EMPTY;
 
         public DescriptorImpl() {
             super(HipChatNotifier.class);
             load();
+            RoutingRules rules = RoutingRules.EMPTY;
+            try {
+                rules = RoutingRules.parse(routingRules);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Ignoring invalid HipChat routing rules", e);
+            }
+            config = newConfig(rules);
+        }
+
+        private HipChatConfig newConfig(RoutingRules rules) {
+            return new HipChatConfig(token, room, buildServerUrl, sendAs, smartNotifications, startNotification, rules,
+                    false, null, progressInterval, progressThreshold, dailyDigestRooms, weeklyDigestRooms,
+                    userListToken);
+        }
+
+        /**
+         * @return the current global settings, never null
+         */
+        public HipChatConfig getConfig() {
+            return config;
         }
 
         public String getToken() {
-            return token;
+            return config.getToken();
+        }
+
+        public String getUserListToken() {
+            return config.getUserListToken();
         }
 
         public String getRoom() {
-            return room;
+            return config.getRoom();
         }
 
         public String getBuildServerUrl() {
-            return buildServerUrl;
+            return config.getBuildServerUrl();
         }
 
         public String getSendAs() {
-            return sendAs;
+            return config.getSendAs();
+        }
+
+        /**
+         * @return the persisted rule text, kept even when it failed to parse
+         *         at load time so that saving the page does not drop it
+         */
+        public String getRoutingRulesText() {
+            return routingRules;
+        }
+
+        public RoutingRules getRoutingRules() {
+            return config.getRoutingRules();
+        }
+
+        public int getProgressInterval() {
+            return (int) (config.getProgressIntervalMillis() / 60000L);
+        }
+
+        public int getProgressThreshold() {
+            return config.getProgressThreshold();
+        }
+
+        public String getDailyDigestRooms() {
+            return StringUtils.join(config.getDailyDigestRooms(), ",");
+        }
+
+        public String getWeeklyDigestRooms() {
+            return StringUtils.join(config.getWeeklyDigestRooms(), ",");
         }
 
         public boolean isApplicable(Class<? extends AbstractProject> aClass) {
@@ -42,41 +108,93 @@ import org.kohsuke.stapler.StaplerRequest;
 
         @Override
         public Publisher newInstance(StaplerRequest request, JSONObject formData) throws FormException {
+            HipChatConfig global = config;
             String projectRoom = request.getParameter("hipChatRoom");;
             String projectSendAs = request.getParameter("hipChatSendAs");
-            
+
             if (projectRoom == null || projectRoom.trim().length() == 0) {
-              projectRoom = room;
+              projectRoom = global.getRoom();
             }
             if (projectSendAs == null || projectSendAs.trim().length() == 0) {
-              projectSendAs = sendAs;
+              projectSendAs = global.getSendAs();
+            }
+
+            boolean projectSmartNotifications = request.getParameter("hipChatSmartNotifications") != null;
+            boolean projectStartNotification = request.getParameter("hipChatStartNotification") != null;
+            String projectProgressMarker = request.getParameter("hipChatProgressMarker");
+            if (projectProgressMarker != null && projectProgressMarker.trim().length() > 0) {
+                try {
+                    HipChatConfig.compileProgressMarker(projectProgressMarker);
+                } catch (PatternSyntaxException e) {
+                    throw new FormException("Invalid progress marker: " + e.getDescription(), e, "hipChatProgressMarker");
+                }
             }
-            
-            smartNotifications = request.getParameter("hipChatSmartNotifications") != null;
-            startNotification = request.getParameter("hipChatStartNotification") != null;
-            return new HipChatNotifier(token, projectRoom, buildServerUrl, projectSendAs, smartNotifications, startNotification);
+            HipChatNotifier notifier = new HipChatNotifier(global.getToken(), projectRoom, global.getBuildServerUrl(), projectSendAs, projectSmartNotifications, projectStartNotification);
+            notifier.setProgressNotification(request.getParameter("hipChatProgressNotification") != null);
+            notifier.setProgressMarker(projectProgressMarker);
+            return notifier;
         }
 
         @Override
-        public boolean configure(StaplerRequest request, JSONObject formData) throws FormException {
-            token = request.getParameter("hipChatToken");
-            room = request.getParameter("hipChatRoom");
-            buildServerUrl = request.getParameter("hipChatBuildServerUrl");
-            sendAs = request.getParameter("hipChatSendAs");
-            if (buildServerUrl != null && !buildServerUrl.endsWith("/")) {
-                buildServerUrl = buildServerUrl + "/";
+        public synchronized boolean configure(StaplerRequest request, JSONObject formData) throws FormException {
+            String newToken = request.getParameter("hipChatToken");
+            String newRoom = request.getParameter("hipChatRoom");
+            String newBuildServerUrl = HipChatConfig.normalizeUrl(request.getParameter("hipChatBuildServerUrl"));
+            String newSendAs = request.getParameter("hipChatSendAs");
+            boolean newSmartNotifications = request.getParameter("hipChatSmartNotifications") != null;
+            boolean newStartNotification = request.getParameter("hipChatStartNotification") != null;
+            String newRoutingRules = request.getParameter("hipChatRoutingRules");
+            int newProgressInterval = parsePositiveInt(request.getParameter("hipChatProgressInterval"),
+                    HipChatConfig.DEFAULT_PROGRESS_INTERVAL_MINUTES, "hipChatProgressInterval");
+            int newProgressThreshold = parsePositiveInt(request.getParameter("hipChatProgressThreshold"),
+                    HipChatConfig.DEFAULT_PROGRESS_THRESHOLD, "hipChatProgressThreshold");
+            String newDailyDigestRooms = request.getParameter("hipChatDailyDigestRooms");
+            String newWeeklyDigestRooms = request.getParameter("hipChatWeeklyDigestRooms");
+            String newUserListToken = request.getParameter("hipChatUserListToken");
+            RoutingRules rules;
+            try {
+                rules = RoutingRules.parse(newRoutingRules);
+            } catch (IllegalArgumentException e) {
+                throw new FormException(e.getMessage(), e, "hipChatRoutingRules");
             }
-            smartNotifications = request.getParameter("hipChatSmartNotifications") != null;
-            startNotification = request.getParameter("hipChatStartNotification") != null;
             try {
-                new HipChatNotifier(token, room, buildServerUrl, sendAs, smartNotifications, startNotification);
+                new HipChatNotifier(newToken, newRoom, newBuildServerUrl, newSendAs, newSmartNotifications, newStartNotification);
             } catch (Exception e) {
                 throw new FormException("Failed to initialize notifier - check your global notifier configuration settings", e, "");
             }
+
+            token = newToken;
+            room = newRoom;
+            buildServerUrl = newBuildServerUrl;
+            sendAs = newSendAs;
+            smartNotifications = newSmartNotifications;
+            startNotification = newStartNotification;
+            routingRules = newRoutingRules;
+            progressInterval = newProgressInterval;
+            progressThreshold = newProgressThreshold;
+            dailyDigestRooms = newDailyDigestRooms;
+            weeklyDigestRooms = newWeeklyDigestRooms;
+            userListToken = newUserListToken;
+            config = newConfig(rules);
             save();
             return super.configure(request, formData);
         }
 
+        private static int parsePositiveInt(String value, int defaultValue, String field) throws FormException {
+            if (value == null || value.trim().length() == 0) {
+                return defaultValue;
+            }
+            try {
+                int parsed = Integer.parseInt(value.trim());
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new FormException("Expected a positive number but got '" + value + "'", field);
+        }
+
         @Override
         public String getDisplayName() {
             return "HipChat Notifications";
@@ -84,11 +202,11 @@ import org.kohsuke.stapler.StaplerRequest;
 
         public boolean getSmartNotifications()
         {
-          return smartNotifications;
+          return config.getSmartNotifications();
         }
 
         public boolean getStartNotification()
         {
-          return startNotification;
+          return config.getStartNotification();
         }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package jenkins.plugins.hipchat;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Incremental per-room statistics behind the digest reports.
+ * <p>
+ * Each completed build is folded into a fixed-size {@link DigestBucket} of
+ * its room and day, so rendering a digest only merges a handful of buckets
+ * and never reads build records. Buckets older than {@link #RETAINED_DAYS}
+ * are pruned. Instances are persisted by {@link DigestReporter}.
+ */
+public class DigestAggregator {
+
+    static final int RETAINED_DAYS = 8;
+
+    private final Map<String, List<DigestBucket>> rooms = new HashMap<String, List<DigestBucket>>();
+    private long lastDailyDigest;
+    private long lastWeeklyDigest;
+
+    private transient boolean dirty;
+
+    public synchronized void record(Collection<String> digestRooms, long dayStart, String job, String result,
+                                    long durationMillis, boolean flipped, Collection<String> culprits) {
+        for (String room : digestRooms) {
+            bucket(room, dayStart).record(job, result, durationMillis, flipped, culprits);
+        }
+        dirty = true;
+    }
+
+    private DigestBucket bucket(String room, long dayStart) {
+        List<DigestBucket> buckets = rooms.get(room);
+        if (buckets == null) {
+            buckets = new ArrayList<DigestBucket>();
+            rooms.put(room, buckets);
+        }
+        for (DigestBucket bucket : buckets) {
+            if (bucket.getStart() == dayStart) {
+                return bucket;
+            }
+        }
+        DigestBucket bucket = new DigestBucket(dayStart);
+        buckets.add(bucket);
+        return bucket;
+    }
+
+    /**
+     * @return the merged statistics of the buckets starting in [from, to), or null if there are none
+     */
+    public synchronized DigestBucket aggregate(String room, long from, long to) {
+        List<DigestBucket> buckets = rooms.get(room);
+        if (buckets == null) {
+            return null;
+        }
+        DigestBucket merged = null;
+        for (DigestBucket bucket : buckets) {
+            if (bucket.getStart() >= from && bucket.getStart() < to) {
+                if (merged == null) {
+                    merged = new DigestBucket(from);
+                }
+                merged.merge(bucket);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Drops the buckets starting before the given time and the rooms left empty.
+     */
+    public synchronized void prune(long before) {
+        for (Iterator<List<DigestBucket>> it = rooms.values().iterator(); it.hasNext(); ) {
+            List<DigestBucket> buckets = it.next();
+            for (Iterator<DigestBucket> b = buckets.iterator(); b.hasNext(); ) {
+                if (b.next().getStart() < before) {
+                    b.remove();
+                    dirty = true;
+                }
+            }
+            if (buckets.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized long getLastDailyDigest() {
+        return lastDailyDigest;
+    }
+
+    public synchronized void setLastDailyDigest(long lastDailyDigest) {
+        this.lastDailyDigest = lastDailyDigest;
+        dirty = true;
+    }
+
+    public synchronized long getLastWeeklyDigest() {
+        return lastWeeklyDigest;
+    }
+
+    public synchronized void setLastWeeklyDigest(long lastWeeklyDigest) {
+        this.lastWeeklyDigest = lastWeeklyDigest;
+        dirty = true;
+    }
+
+    /**
+     * @return true if there were changes since the last call
+     */
+    synchronized boolean clearDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * @return the start of the day containing the given time, offset by a number of days
+     */
+    static long dayStart(long time, int offsetDays, TimeZone zone) {
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(time);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        c.add(Calendar.DAY_OF_MONTH, offsetDays);
+        return c.getTimeInMillis();
+    }
+
+    /**
+     * @return the start of the week (Monday) containing the given time
+     */
+    static long weekStart(long time, TimeZone zone) {
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(dayStart(time, 0, zone));
+        int sinceMonday = (c.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7;
+        c.add(Calendar.DAY_OF_MONTH, -sinceMonday);
+        return c.getTimeInMillis();
+    }
+}
@@ -0,0 +1,96 @@
+package jenkins.plugins.hipchat;
+
+import java.util.Collection;
+
+/**
+ * Aggregated build statistics of one room for one day. Every field has a
+ * fixed size, so a bucket costs the same whatever the number of builds.
+ */
+public class DigestBucket {
+
+    static final int CAPACITY = 20;
+
+    private final long start;
+    private int builds;
+    private int failures;
+    private int unstable;
+    private long totalDuration;
+    private final TopK failingJobs = new TopK(CAPACITY);
+    private final TopK flakyJobs = new TopK(CAPACITY);
+    private final TopK slowestJobs = new TopK(CAPACITY);
+    private final TopK culprits = new TopK(CAPACITY);
+
+    public DigestBucket(long start) {
+        this.start = start;
+    }
+
+    /**
+     * @param flipped  whether the result differs from the previous build of the job
+     * @param culprits names to blame for a failure, may be empty
+     */
+    public void record(String job, String result, long durationMillis, boolean flipped, Collection<String> culprits) {
+        builds++;
+        totalDuration += durationMillis;
+        if ("FAILURE".equals(result)) {
+            failures++;
+            failingJobs.add(job, 1);
+        } else if ("UNSTABLE".equals(result)) {
+            unstable++;
+            failingJobs.add(job, 1);
+        }
+        if (flipped) {
+            flakyJobs.add(job, 1);
+        }
+        slowestJobs.max(job, durationMillis);
+        for (String culprit : culprits) {
+            this.culprits.add(culprit, 1);
+        }
+    }
+
+    public void merge(DigestBucket other) {
+        builds += other.builds;
+        failures += other.failures;
+        unstable += other.unstable;
+        totalDuration += other.totalDuration;
+        failingJobs.addAll(other.failingJobs);
+        flakyJobs.addAll(other.flakyJobs);
+        slowestJobs.maxAll(other.slowestJobs);
+        culprits.addAll(other.culprits);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public int getBuilds() {
+        return builds;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public int getUnstable() {
+        return unstable;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public TopK getFailingJobs() {
+        return failingJobs;
+    }
+
+    public TopK getFlakyJobs() {
+        return flakyJobs;
+    }
+
+    public TopK getSlowestJobs() {
+        return slowestJobs;
+    }
+
+    public TopK getCulprits() {
+        return culprits;
+    }
+}
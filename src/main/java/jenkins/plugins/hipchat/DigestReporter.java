@@ -0,0 +1,215 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import jenkins.model.Jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds completed builds into the {@link DigestAggregator} and sends the
+ * daily and weekly digests to the configured rooms.
+ */
+@SuppressWarnings("rawtypes")
+public class DigestReporter {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.DIGEST);
+
+    static final int TOP = 5;
+
+    private static DigestAggregator aggregator;
+
+    static synchronized DigestAggregator getAggregator() {
+        if (aggregator == null) {
+            aggregator = new DigestAggregator();
+            XmlFile file = getFile();
+            if (file.exists()) {
+                try {
+                    file.unmarshal(aggregator);
+                } catch (IOException e) {
+                    logger.warning("Unable to load HipChat digest statistics", e);
+                }
+            }
+        }
+        return aggregator;
+    }
+
+    private static XmlFile getFile() {
+        return new XmlFile(Jenkins.XSTREAM, new File(Jenkins.getInstance().getRootDir(), DigestAggregator.class.getName() + ".xml"));
+    }
+
+    /**
+     * Records a completed build for the digest rooms among the job rooms.
+     */
+    public static void record(AbstractBuild build, HipChatConfig config) {
+        Set<String> rooms = new LinkedHashSet<String>();
+        for (String room : config.getRooms()) {
+            if (config.getDailyDigestRooms().contains(room) || config.getWeeklyDigestRooms().contains(room)) {
+                rooms.add(room);
+            }
+        }
+        if (rooms.isEmpty()) {
+            return;
+        }
+        Result result = build.getResult();
+        if (result == null) {
+            return;
+        }
+        Run previous = build.getPreviousBuild();
+        boolean flipped = previous != null && previous.getResult() != null && previous.getResult() != result;
+
+        Collection<String> culprits = Collections.emptyList();
+        if (result.isWorseThan(Result.SUCCESS) && result != Result.ABORTED && result != Result.NOT_BUILT) {
+            culprits = new LinkedHashSet<String>();
+            MentionResolver mentions = MentionResolver.get();
+            // authors of this build's changes only; the full culprit set would walk the build history
+            for (Object o : build.getChangeSet()) {
+                User user = ((ChangeLogSet.Entry) o).getAuthor();
+                String mention = mentions.resolve(user);
+                culprits.add(mention != null ? "@" + mention : user.getDisplayName());
+            }
+        }
+
+        // bucket by completion, a build running over midnight would otherwise land in a day already reported
+        long completed = build.getTimeInMillis() + build.getDuration();
+        getAggregator().record(rooms, DigestAggregator.dayStart(completed, 0, TimeZone.getDefault()),
+                build.getProject().getFullDisplayName(), result.toString(), build.getDuration(), flipped, culprits);
+    }
+
+    /**
+     * Sends the digests that are due and prunes old statistics.
+     */
+    static void report(long now) {
+        HipChatConfig config = HipChatNotifier.DESCRIPTOR.getConfig();
+        DigestAggregator stats = getAggregator();
+        TimeZone zone = TimeZone.getDefault();
+
+        long today = DigestAggregator.dayStart(now, 0, zone);
+        if (stats.getLastDailyDigest() < today) {
+            long yesterday = DigestAggregator.dayStart(now, -1, zone);
+            String title = "Daily digest for " + new SimpleDateFormat("yyyy-MM-dd").format(new Date(yesterday));
+            send(config, config.getDailyDigestRooms(), title, stats, yesterday, today);
+            stats.setLastDailyDigest(today);
+        }
+
+        long week = DigestAggregator.weekStart(now, zone);
+        if (stats.getLastWeeklyDigest() < week) {
+            long previousWeek = DigestAggregator.dayStart(week, -7, zone);
+            String title = "Weekly digest for the week of " + new SimpleDateFormat("yyyy-MM-dd").format(new Date(previousWeek));
+            send(config, config.getWeeklyDigestRooms(), title, stats, previousWeek, week);
+            stats.setLastWeeklyDigest(week);
+        }
+
+        stats.prune(DigestAggregator.dayStart(now, -DigestAggregator.RETAINED_DAYS, zone));
+        save();
+    }
+
+    /**
+     * Writes the statistics if they changed since the last save. The
+     * aggregator lock is held while XStream walks it, so no build can be
+     * recorded halfway through the write.
+     */
+    /**
+     * @return true if builds were recorded since the last save; never loads
+     *         the statistics just to find out
+     */
+    static synchronized boolean needsSave() {
+        return aggregator != null && aggregator.isDirty();
+    }
+
+    static void save() {
+        DigestAggregator stats = getAggregator();
+        synchronized (stats) {
+            if (!stats.clearDirty()) {
+                return;
+            }
+            try {
+                getFile().write(stats);
+            } catch (IOException e) {
+                stats.markDirty();
+                logger.warnRateLimited("save", "Unable to save HipChat digest statistics", e);
+            }
+        }
+    }
+
+    private static void send(HipChatConfig config, List<String> rooms, String title, DigestAggregator stats, long from, long to) {
+        for (String room : rooms) {
+            DigestBucket bucket = stats.aggregate(room, from, to);
+            if (bucket == null || bucket.getBuilds() == 0) {
+                continue;
+            }
+            new StandardHipChatService(config.getToken(), Collections.singletonList(room), config.getSendAs())
+                    .publish(render(title, bucket), bucket.getFailures() > 0 ? "yellow" : "green", false);
+        }
+    }
+
+    static String render(String title, DigestBucket bucket) {
+        StringBuilder message = new StringBuilder();
+        int failed = bucket.getFailures() + bucket.getUnstable();
+        message.append("<b>").append(title).append("</b>: ");
+        message.append(bucket.getBuilds()).append(" builds, ");
+        message.append(bucket.getFailures()).append(" failed, ");
+        message.append(bucket.getUnstable()).append(" unstable (");
+        message.append(failed * 100 / bucket.getBuilds()).append("% failure rate), average duration ");
+        message.append(Util.getTimeSpanString(bucket.getTotalDuration() / bucket.getBuilds()));
+        appendTop(message, "Most failing", bucket.getFailingJobs(), false);
+        appendTop(message, "Flakiest", bucket.getFlakyJobs(), false);
+        appendTop(message, "Slowest", bucket.getSlowestJobs(), true);
+        appendTop(message, "Top culprits", bucket.getCulprits(), false);
+        return message.toString();
+    }
+
+    private static void appendTop(StringBuilder message, String label, TopK top, boolean duration) {
+        List<TopK.Entry> entries = top.top(TOP);
+        if (entries.isEmpty()) {
+            return;
+        }
+        message.append("<br/>").append(label).append(": ");
+        for (int i = 0; i < entries.size(); i++) {
+            TopK.Entry entry = entries.get(i);
+            if (i > 0) {
+                message.append(", ");
+            }
+            message.append(Util.escape(entry.getKey())).append(" (");
+            message.append(duration ? Util.getTimeSpanString(entry.getValue()) : String.valueOf(entry.getValue()));
+            message.append(")");
+        }
+    }
+
+    @Extension
+    public static final class Task extends AsyncPeriodicWork {
+
+        public Task() {
+            super("HipChat digest reports");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.HOURS.toMillis(1);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            report(System.currentTimeMillis());
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package jenkins.plugins.hipchat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Immutable snapshot of the notifier settings.
+ * <p>
+ * {@link DescriptorImpl} publishes a new global snapshot on every save and
+ * {@link HipChatNotifier} derives the effective per-job snapshot from it, so
+ * a notification reads one consistent set of values through a single
+ * volatile reference. Room lists and the server URL are parsed here once
+ * instead of on every message.
+ */
+public final class HipChatConfig {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.CONFIG);
+
+    static final String DEFAULT_SEND_AS = "Build Server";
+    static final int DEFAULT_PROGRESS_INTERVAL_MINUTES = 15;
+    static final int DEFAULT_PROGRESS_THRESHOLD = 10;
+
+    public static final HipChatConfig EMPTY = new HipChatConfig(null, null, null, null, false, false, RoutingRules.EMPTY);
+
+    private final String token;
+    private final String room;
+    private final List<String> rooms;
+    private final String buildServerUrl;
+    private final String sendAs;
+    private final boolean smartNotifications;
+    private final boolean startNotification;
+    private final RoutingRules routingRules;
+    private final boolean progressNotification;
+    private final Pattern progressMarker;
+    private final long progressIntervalMillis;
+    private final int progressThreshold;
+    private final List<String> dailyDigestRooms;
+    private final List<String> weeklyDigestRooms;
+    private final String userListToken;
+
+    public HipChatConfig(String token, String room, String buildServerUrl, String sendAs,
+                         boolean smartNotifications, boolean startNotification, RoutingRules routingRules) {
+        this(token, room, buildServerUrl, sendAs, smartNotifications, startNotification, routingRules,
+                false, null, DEFAULT_PROGRESS_INTERVAL_MINUTES, DEFAULT_PROGRESS_THRESHOLD, null, null, null);
+    }
+
+    public HipChatConfig(String token, String room, String buildServerUrl, String sendAs,
+                         boolean smartNotifications, boolean startNotification, RoutingRules routingRules,
+                         boolean progressNotification, Pattern progressMarker, int progressIntervalMinutes, int progressThreshold,
+                         String dailyDigestRooms, String weeklyDigestRooms, String userListToken) {
+        this.token = token;
+        this.room = room;
+        this.rooms = parseRooms(room);
+        this.buildServerUrl = normalizeUrl(buildServerUrl);
+        this.sendAs = sendAs;
+        this.smartNotifications = smartNotifications;
+        this.startNotification = startNotification;
+        this.routingRules = routingRules == null ? RoutingRules.EMPTY : routingRules;
+        this.progressNotification = progressNotification;
+        this.progressMarker = progressMarker;
+        this.progressIntervalMillis = TimeUnit.MINUTES.toMillis(progressIntervalMinutes > 0 ? progressIntervalMinutes : DEFAULT_PROGRESS_INTERVAL_MINUTES);
+        this.progressThreshold = progressThreshold > 0 ? progressThreshold : DEFAULT_PROGRESS_THRESHOLD;
+        this.dailyDigestRooms = parseRooms(dailyDigestRooms);
+        this.weeklyDigestRooms = parseRooms(weeklyDigestRooms);
+        this.userListToken = userListToken;
+    }
+
+    private static List<String> parseRooms(String rooms) {
+        return rooms == null ? Collections.<String>emptyList() : Collections.unmodifiableList(RoutingRules.splitList(rooms));
+    }
+
+    /**
+     * Resolves the effective settings of a job, falling back to the global
+     * snapshot for every value the job leaves blank.
+     */
+    static HipChatConfig forJob(HipChatConfig global, String token, String room, String buildServerUrl, String sendAs,
+                                boolean smartNotifications, boolean startNotification) {
+        return forJob(global, token, room, buildServerUrl, sendAs, smartNotifications, startNotification, false, null);
+    }
+
+    static HipChatConfig forJob(HipChatConfig global, String token, String room, String buildServerUrl, String sendAs,
+                                boolean smartNotifications, boolean startNotification,
+                                boolean progressNotification, String progressMarker) {
+        String effectiveSendAs = firstNonBlank(sendAs, global.sendAs);
+        Pattern marker = null;
+        if (progressMarker != null && progressMarker.trim().length() > 0) {
+            try {
+                marker = compileProgressMarker(progressMarker);
+            } catch (PatternSyntaxException e) {
+                logger.warning("Ignoring invalid HipChat progress marker " + progressMarker, e);
+            }
+        }
+        return new HipChatConfig(
+                firstNonBlank(token, global.token),
+                firstNonBlank(room, global.room),
+                firstNonBlank(buildServerUrl, global.buildServerUrl),
+                effectiveSendAs == null ? DEFAULT_SEND_AS : effectiveSendAs,
+                smartNotifications,
+                startNotification,
+                global.routingRules,
+                progressNotification,
+                marker,
+                (int) TimeUnit.MILLISECONDS.toMinutes(global.progressIntervalMillis),
+                global.progressThreshold,
+                StringUtils.join(global.dailyDigestRooms, ","),
+                StringUtils.join(global.weeklyDigestRooms, ","),
+                global.userListToken);
+    }
+
+    /**
+     * @throws PatternSyntaxException if the marker is not a valid regular expression
+     */
+    static Pattern compileProgressMarker(String progressMarker) {
+        return Pattern.compile(progressMarker.trim());
+    }
+
+    static String normalizeUrl(String url) {
+        if (url == null || url.trim().length() == 0) {
+            return url;
+        }
+        url = url.trim();
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    private static String firstNonBlank(String value, String fallback) {
+        return value == null || value.trim().length() == 0 ? fallback : value;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return the room setting as entered, comma separated
+     */
+    public String getRoom() {
+        return room;
+    }
+
+    /**
+     * @return the parsed room list
+     */
+    public List<String> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * @return the server URL, always ending with a slash when set
+     */
+    public String getBuildServerUrl() {
+        return buildServerUrl;
+    }
+
+    public String getSendAs() {
+        return sendAs;
+    }
+
+    public boolean getSmartNotifications() {
+        return smartNotifications;
+    }
+
+    public boolean getStartNotification() {
+        return startNotification;
+    }
+
+    public RoutingRules getRoutingRules() {
+        return routingRules;
+    }
+
+    public boolean getProgressNotification() {
+        return progressNotification;
+    }
+
+    /**
+     * @return the pattern of build log lines announcing a new stage, or null
+     */
+    public Pattern getProgressMarker() {
+        return progressMarker;
+    }
+
+    public long getProgressIntervalMillis() {
+        return progressIntervalMillis;
+    }
+
+    /**
+     * @return the minimum change in percent complete worth a progress update
+     */
+    public int getProgressThreshold() {
+        return progressThreshold;
+    }
+
+    /**
+     * @return the rooms that get a daily digest report
+     */
+    public List<String> getDailyDigestRooms() {
+        return dailyDigestRooms;
+    }
+
+    /**
+     * @return the rooms that get a weekly digest report
+     */
+    public List<String> getWeeklyDigestRooms() {
+        return weeklyDigestRooms;
+    }
+
+    /**
+     * @return the admin token used to load the HipChat user list, or null to use {@link #getToken()}
+     */
+    public String getUserListToken() {
+        return userListToken;
+    }
+}
@@ -23,6 +23,11 @@ public class HipChatListener extends RunListener<AbstractBuild> {
 
     @Override
     public void onCompleted(AbstractBuild r, TaskListener listener) {
+        ProgressTracker.get().completed(r);
+        HipChatNotifier notifier = getPublisher(r.getProject());
+        if (notifier != null) {
+          DigestReporter.record(r, notifier.getConfig());
+        }
         getNotifier(r.getProject()).completed(r);
         super.onCompleted(r, listener);
     }
@@ -30,7 +35,10 @@ public class HipChatListener extends RunListener<AbstractBuild> {
     @Override
     public void onStarted(AbstractBuild r, TaskListener listener) {
         HipChatNotifier notifier = getPublisher(r.getProject());
-        if (notifier != null && notifier.getStartNotification()) {
+        if (notifier != null) {
+          ProgressTracker.get().started(r, notifier);
+        }
+        if (notifier != null && notifier.getConfig().getStartNotification()) {
           getNotifier(r.getProject()).started(r);
         }
     }
@@ -0,0 +1,182 @@
+package jenkins.plugins.hipchat;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Logging for the plugin, split by category so each one can be given its
+ * own level from the Jenkins log configuration, e.g.
+ * {@code jenkins.plugins.hipchat.publish} at FINE.
+ * <p>
+ * Debug messages take a {@link java.text.MessageFormat} pattern and are only
+ * formatted when the level is enabled; callers computing expensive arguments
+ * guard them with {@link #isDebug()}. Message bodies are never logged, only
+ * summarized, and API tokens are masked. Repeated warnings for the same key
+ * are logged at most once per {@link #RATE_LIMIT_MILLIS}, with a count of
+ * the ones suppressed.
+ */
+public final class HipChatLog {
+
+    public enum Category {
+        PUBLISH, CHANGES, UPSTREAM, ROUTING, MENTIONS, PROGRESS, DIGEST, CONFIG
+    }
+
+    static final long RATE_LIMIT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final Pattern TOKEN = Pattern.compile("(auth_token=)[^&\\s\"']+");
+
+    private static final Map<Category, HipChatLog> LOGS = new EnumMap<Category, HipChatLog>(Category.class);
+
+    static {
+        for (Category category : Category.values()) {
+            LOGS.put(category, new HipChatLog(Logger.getLogger(
+                    HipChatLog.class.getPackage().getName() + "." + category.name().toLowerCase(Locale.ENGLISH))));
+        }
+    }
+
+    private final Logger logger;
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+
+    private HipChatLog(Logger logger) {
+        this.logger = logger;
+    }
+
+    public static HipChatLog get(Category category) {
+        return LOGS.get(category);
+    }
+
+    Logger getLogger() {
+        return logger;
+    }
+
+    public boolean isDebug() {
+        return logger.isLoggable(Level.FINE);
+    }
+
+    public void debug(String pattern, Object... args) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, pattern, redactThrowables(args));
+        }
+    }
+
+    public void info(String pattern, Object... args) {
+        if (logger.isLoggable(Level.INFO)) {
+            logger.log(Level.INFO, pattern, redactThrowables(args));
+        }
+    }
+
+    private static Object[] redactThrowables(Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Throwable) {
+                args[i] = redact(args[i].toString());
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Logs a warning with the redacted exception message; the stack trace
+     * is only logged at FINE.
+     */
+    public void warning(String message, Throwable t) {
+        log(message, t);
+    }
+
+    /**
+     * Logs a warning unless one with the same key was logged recently.
+     */
+    public void warnRateLimited(String key, String message, Throwable t) {
+        warnRateLimited(key, message, t, System.currentTimeMillis());
+    }
+
+    /**
+     * @return true if the warning was logged, false if it was suppressed
+     */
+    boolean warnRateLimited(String key, String message, Throwable t, long now) {
+        Limit limit = limits.get(key);
+        if (limit == null) {
+            Limit created = new Limit();
+            limit = limits.putIfAbsent(key, created);
+            if (limit == null) {
+                limit = created;
+            }
+        }
+        int suppressed;
+        synchronized (limit) {
+            if (limit.logged && now - limit.last < RATE_LIMIT_MILLIS) {
+                limit.suppressed++;
+                return false;
+            }
+            suppressed = limit.suppressed;
+            limit.suppressed = 0;
+            limit.last = now;
+            limit.logged = true;
+        }
+        log(suppressed > 0 ? message + " (" + suppressed + " similar warnings suppressed)" : message, t);
+        return true;
+    }
+
+    private void log(String message, Throwable t) {
+        if (!logger.isLoggable(Level.WARNING)) {
+            return;
+        }
+        logger.log(Level.WARNING, t == null ? redact(message) : redact(message + ": " + t));
+        if (t != null && logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Stack trace of the previous warning", redact(t));
+        }
+    }
+
+    /**
+     * Masks API tokens passed as {@code auth_token} parameters.
+     */
+    public static String redact(String text) {
+        return text == null ? null : TOKEN.matcher(text).replaceAll("$1****");
+    }
+
+    /**
+     * @return a copy of the throwable and its causes with redacted messages
+     *         and the original stack traces
+     */
+    static Throwable redact(Throwable t) {
+        if (t == null) {
+            return null;
+        }
+        Throwable copy = new RedactedThrowable(t.getClass().getName(), redact(t.getMessage()), redact(t.getCause()));
+        copy.setStackTrace(t.getStackTrace());
+        return copy;
+    }
+
+    /**
+     * Describes a message body without revealing its content.
+     */
+    public static String summarize(String message) {
+        return message == null ? "<no message>" : "<" + message.length() + " chars>";
+    }
+
+    private static final class RedactedThrowable extends Throwable {
+        private final String type;
+
+        RedactedThrowable(String type, String message, Throwable cause) {
+            super(message, cause);
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            return getMessage() == null ? type : type + ": " + getMessage();
+        }
+    }
+
+    private static final class Limit {
+        private long last;
+        private boolean logged;
+        private int suppressed;
+    }
+}
@@ -0,0 +1,92 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.IOException;
+
+/**
+ * Admin page to replay the notifications of a time range and to send test
+ * bursts to a room, showing the throughput achieved.
+ */
+@Extension
+public class HipChatManagementLink extends ManagementLink {
+
+    private volatile ThroughputReport lastReport;
+    private volatile String lastError;
+
+    @Override
+    public String getIconFileName() {
+        return "notepad.png";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "hipchat";
+    }
+
+    public String getDisplayName() {
+        return "HipChat Notifications";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Replay missed HipChat notifications and measure notification throughput.";
+    }
+
+    public ThroughputReport getLastReport() {
+        return lastReport;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public String getTimeFormat() {
+        return NotificationReplay.TIME_FORMAT;
+    }
+
+    public int getMaxBurst() {
+        return NotificationReplay.MAX_BURST;
+    }
+
+    @RequirePOST
+    public void doReplay(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        try {
+            long from = NotificationReplay.parseTime(request.getParameter("from"));
+            long to = NotificationReplay.parseEndTime(request.getParameter("to"));
+            report(NotificationReplay.replay(from, to, request.getParameter("job")));
+        } catch (IllegalArgumentException e) {
+            fail(e);
+        }
+        response.sendRedirect(".");
+    }
+
+    @RequirePOST
+    public void doTestBurst(StaplerRequest request, StaplerResponse response) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        try {
+            String count = request.getParameter("count");
+            report(NotificationReplay.testBurst(request.getParameter("room"), Integer.parseInt(count == null ? "" : count.trim())));
+        } catch (IllegalArgumentException e) {
+            fail(e);
+        }
+        response.sendRedirect(".");
+    }
+
+    private void report(ThroughputReport report) {
+        lastReport = report;
+        lastError = null;
+    }
+
+    private void fail(IllegalArgumentException e) {
+        lastReport = null;
+        lastError = e instanceof NumberFormatException ? "The number of messages must be a number" : e.getMessage();
+    }
+}
@@ -9,6 +9,7 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.export.Exported;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -23,12 +24,16 @@ public class HipChatNotifier extends Notifier {
     private String sendAs;
     private boolean smartNotifications;
     private boolean startNotification;
+    private boolean progressNotification;
+    private String progressMarker;
+
+    private transient volatile Resolved resolved;
 
     @Extension
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
     
     public String getConfiguredRoom() {
-      if ( DESCRIPTOR.getRoom().equals(room) ) {
+      if ( room == null || room.equals(DESCRIPTOR.getRoom()) ) {
           return null;
       } else {
           return room;
@@ -36,7 +41,7 @@ public class HipChatNotifier extends Notifier {
   }
 
     public String getConfiguredSendAs() {
-      if ( DESCRIPTOR.getSendAs().equals(sendAs) ) {
+      if ( sendAs == null || sendAs.equals(DESCRIPTOR.getSendAs()) ) {
           return null;
       } else {
           return sendAs;
@@ -44,20 +49,42 @@ public class HipChatNotifier extends Notifier {
   }
 
 
-    public void setBuildServerUrl(final String buildServerUrl) {
+    /**
+     * Returns the effective settings of this job merged with the global
+     * ones. The snapshot is cached until either side changes.
+     */
+    public HipChatConfig getConfig() {
+        HipChatConfig global = DESCRIPTOR.getConfig();
+        Resolved r = resolved;
+        if (r != null && r.global == global) {
+            return r.config;
+        }
+        synchronized (this) {
+            r = new Resolved(global, HipChatConfig.forJob(global, authToken, room, buildServerUrl, sendAs, smartNotifications, startNotification,
+                    progressNotification, progressMarker));
+            resolved = r;
+        }
+        return r.config;
+    }
+
+    public synchronized void setBuildServerUrl(final String buildServerUrl) {
         this.buildServerUrl = buildServerUrl;
+        this.resolved = null;
     }
 
-    public void setAuthToken(final String authToken) {
+    public synchronized void setAuthToken(final String authToken) {
         this.authToken = authToken;
+        this.resolved = null;
     }
 
-    public void setRoom(final String room) {
+    public synchronized void setRoom(final String room) {
         this.room = room;
+        this.resolved = null;
     }
 
-    public void setSendAs(final String sendAs) {
+    public synchronized void setSendAs(final String sendAs) {
         this.sendAs = sendAs;
+        this.resolved = null;
     }
 
     @DataBoundConstructor
@@ -76,7 +103,18 @@ public class HipChatNotifier extends Notifier {
     }
 
     public HipChatService newHipChatService(final String room) {
-        return new StandardHipChatService(getAuthToken(), room == null ? getRoom() : room, getSendAs() == null ? "Build Server" : getSendAs());
+        HipChatConfig config = getConfig();
+        return newHipChatService(config, room == null ? config.getRooms() : RoutingRules.splitList(room));
+    }
+
+    HipChatService newHipChatService(HipChatConfig config, List<String> rooms) {
+        return newHipChatService(config, rooms, null);
+    }
+
+    HipChatService newHipChatService(HipChatConfig config, List<String> rooms, DeliveryListener listener) {
+        StandardHipChatService service = new StandardHipChatService(config.getToken(), rooms, config.getSendAs());
+        service.setDeliveryListener(listener);
+        return service;
     }
 
     @Override
@@ -95,9 +133,10 @@ public class HipChatNotifier extends Notifier {
     /**
      * @param smartNotifications the smartNotifications to set
      */
-    public void setSmartNotifications(boolean smartNotifications)
+    public synchronized void setSmartNotifications(boolean smartNotifications)
     {
       this.smartNotifications = smartNotifications;
+      this.resolved = null;
     }
 
     /**
@@ -111,9 +150,38 @@ public class HipChatNotifier extends Notifier {
     /**
      * @param startNotification the startNotification to set
      */
-    public void setStartNotification(boolean startNotification)
+    public synchronized void setStartNotification(boolean startNotification)
     {
       this.startNotification = startNotification;
+      this.resolved = null;
+    }
+
+    /**
+     * @return whether to post progress updates while the build runs
+     */
+    public boolean getProgressNotification()
+    {
+      return progressNotification;
+    }
+
+    public synchronized void setProgressNotification(boolean progressNotification)
+    {
+      this.progressNotification = progressNotification;
+      this.resolved = null;
+    }
+
+    /**
+     * @return the regular expression of log lines announcing a new stage
+     */
+    public String getProgressMarker()
+    {
+      return progressMarker;
+    }
+
+    public synchronized void setProgressMarker(String progressMarker)
+    {
+      this.progressMarker = progressMarker;
+      this.resolved = null;
     }
 
     /**
@@ -147,4 +215,14 @@ public class HipChatNotifier extends Notifier {
     {
       return sendAs;
     }
+
+    private static final class Resolved {
+        private final HipChatConfig global;
+        private final HipChatConfig config;
+
+        Resolved(HipChatConfig global, HipChatConfig config) {
+            this.global = global;
+            this.config = config;
+        }
+    }
 }
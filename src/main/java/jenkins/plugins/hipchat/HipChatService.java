@@ -4,4 +4,6 @@ public interface HipChatService {
     void publish(String message);
 
     void publish(String message, String color);
+
+    void publish(String message, String color, boolean notify);
 }
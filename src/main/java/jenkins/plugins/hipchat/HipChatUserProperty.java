@@ -0,0 +1,54 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.model.User;
+import hudson.model.UserProperty;
+import hudson.model.UserPropertyDescriptor;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Lets a user state their HipChat mention name explicitly, which always
+ * wins over the name looked up from the HipChat user list.
+ */
+public class HipChatUserProperty extends UserProperty {
+
+    private final String mentionName;
+
+    @DataBoundConstructor
+    public HipChatUserProperty(String mentionName) {
+        this.mentionName = normalize(mentionName);
+    }
+
+    /**
+     * @return the mention name without the leading '@', or null if not set
+     */
+    public String getMentionName() {
+        return mentionName;
+    }
+
+    static String normalize(String mentionName) {
+        if (mentionName == null) {
+            return null;
+        }
+        mentionName = mentionName.trim();
+        if (mentionName.startsWith("@")) {
+            mentionName = mentionName.substring(1);
+        }
+        return mentionName.length() == 0 ? null : mentionName;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends UserPropertyDescriptor {
+
+        @Override
+        public UserProperty newInstance(User user) {
+            return new HipChatUserProperty(null);
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "HipChat";
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.PluginWrapper;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.model.User;
+import hudson.tasks.Mailer;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves Jenkins users to HipChat mention names without any network call
+ * on the notification path.
+ * <p>
+ * An explicit {@link HipChatUserProperty} always wins. Otherwise the user's
+ * e-mail address is looked up in a directory loaded in bulk from the HipChat
+ * user list, which is refreshed in the background every {@link #TTL}.
+ * Addresses missing from the directory are remembered, so a repeated miss
+ * costs nothing, while a new miss may trigger an early refresh at most once
+ * every {@link #MIN_REFRESH_INTERVAL}.
+ */
+public class MentionResolver {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.MENTIONS);
+
+    static final long TTL = TimeUnit.HOURS.toMillis(1);
+    static final long MIN_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final MentionResolver INSTANCE = new MentionResolver();
+
+    private volatile Directory directory = new Directory(Collections.<String, String>emptyMap(), 0);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long lastRefreshAttempt;
+    private String host = StandardHipChatService.DEFAULT_HOST;
+
+    public static MentionResolver get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the mention name without the leading '@', or null if unknown
+     */
+    public String resolve(User user) {
+        if (user == null) {
+            return null;
+        }
+        HipChatUserProperty property = user.getProperty(HipChatUserProperty.class);
+        if (property != null && property.getMentionName() != null) {
+            return property.getMentionName();
+        }
+        String address = getMailAddress(user);
+        if (address == null) {
+            return null;
+        }
+        return lookup(address, System.currentTimeMillis());
+    }
+
+    /**
+     * Reads the address from the optional mailer plugin. Its classes are only
+     * touched when the plugin is active, so a missing plugin leaves the
+     * explicit property as the only source instead of failing notifications.
+     */
+    private static String getMailAddress(User user) {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return null;
+        }
+        PluginWrapper mailer = jenkins.getPluginManager().getPlugin("mailer");
+        if (mailer == null || !mailer.isActive()) {
+            return null;
+        }
+        return MailerAddress.of(user);
+    }
+
+    private static final class MailerAddress {
+        static String of(User user) {
+            Mailer.UserProperty mail = user.getProperty(Mailer.UserProperty.class);
+            return mail == null ? null : mail.getAddress();
+        }
+    }
+
+    String lookup(String email, long now) {
+        String key = email.trim().toLowerCase(Locale.ENGLISH);
+        Directory d = directory;
+        String mention = d.mentions.get(key);
+        if (mention == null && d.misses.add(key) && now - Math.max(d.loadedAt, lastRefreshAttempt) >= MIN_REFRESH_INTERVAL) {
+            requestRefresh();
+        }
+        return mention;
+    }
+
+    /**
+     * Reloads the directory on a background thread unless a reload is
+     * already running.
+     */
+    void requestRefresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                try {
+                    refresh();
+                } finally {
+                    refreshing.set(false);
+                }
+            }
+        });
+    }
+
+    void refresh() {
+        // counts as an attempt even without a token, so misses do not keep submitting refreshes
+        lastRefreshAttempt = System.currentTimeMillis();
+        HipChatConfig config = HipChatNotifier.DESCRIPTOR.getConfig();
+        String token = config.getUserListToken();
+        if (token == null || token.trim().length() == 0) {
+            token = config.getToken();
+        }
+        if (token == null || token.trim().length() == 0) {
+            return;
+        }
+        try {
+            Map<String, String> mentions = fetch(token);
+            logger.debug("Loaded {0} HipChat mention names", mentions.size());
+            load(mentions, System.currentTimeMillis());
+        } catch (Exception e) {
+            logger.warnRateLimited("users/list", "Unable to load the HipChat user list", e);
+        }
+    }
+
+    void load(Map<String, String> mentions, long now) {
+        directory = new Directory(mentions, now);
+    }
+
+    private Map<String, String> fetch(String token) throws IOException {
+        HttpClient client = new HttpClient();
+        GetMethod get = new GetMethod("https://" + host + "/v1/users/list?auth_token=" + token);
+        try {
+            int status = client.executeMethod(get);
+            if (status == 401 || status == 403) {
+                throw new IOException("HipChat user list returned HTTP " + status
+                        + "; it needs an admin API token, set one as the User List Token in the global settings");
+            }
+            if (status != 200) {
+                throw new IOException("HipChat user list returned HTTP " + status);
+            }
+            return parseUsers(get.getResponseBodyAsString());
+        } finally {
+            get.releaseConnection();
+        }
+    }
+
+    /**
+     * Parses the response of the v1 users/list API into a map from lower
+     * case e-mail address to mention name.
+     */
+    static Map<String, String> parseUsers(String json) {
+        Map<String, String> mentions = new HashMap<String, String>();
+        JSONArray users = JSONObject.fromObject(json).optJSONArray("users");
+        if (users == null) {
+            return mentions;
+        }
+        for (int i = 0; i < users.size(); i++) {
+            JSONObject user = users.getJSONObject(i);
+            String email = user.optString("email", null);
+            String mention = user.optString("mention_name", null);
+            if (email != null && email.length() > 0 && mention != null && mention.length() > 0) {
+                mentions.put(email.toLowerCase(Locale.ENGLISH), mention);
+            }
+        }
+        return mentions;
+    }
+
+    void setHost(String host) {
+        this.host = host;
+    }
+
+    private static final class Directory {
+        private final Map<String, String> mentions;
+        private final long loadedAt;
+        // addresses already looked up and not found in this directory
+        private final Set<String> misses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        Directory(Map<String, String> mentions, long loadedAt) {
+            this.mentions = Collections.unmodifiableMap(new HashMap<String, String>(mentions));
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    @Extension
+    public static final class DirectoryRefresher extends AsyncPeriodicWork {
+
+        public DirectoryRefresher() {
+            super("HipChat user directory refresh");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TTL;
+        }
+
+        @Override
+        public long getInitialDelay() {
+            return TimeUnit.MINUTES.toMillis(1);
+        }
+
+        @Override
+        protected void execute(TaskListener listener) {
+            MentionResolver.get().refresh();
+        }
+    }
+}
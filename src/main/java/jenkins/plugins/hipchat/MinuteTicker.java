@@ -0,0 +1,60 @@
+package jenkins.plugins.hipchat;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Computer;
+import hudson.triggers.SafeTimerTask;
+import hudson.triggers.Trigger;
+
+import java.util.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives the once a minute background work of the plugin from the Jenkins
+ * timer: progress updates and saving the digest statistics, so a restart
+ * loses at most a minute of recorded builds. Unlike {@link hudson.model.AsyncPeriodicWork}, which logs every run
+ * at INFO and rewrites a task log on this core, a tick only checks whether
+ * there is anything to do and then hands the work to a pooled thread, so an
+ * idle tick costs nothing and the shared timer thread never waits on HipChat.
+ */
+public final class MinuteTicker extends SafeTimerTask {
+
+    static final long PERIOD = TimeUnit.MINUTES.toMillis(1);
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void schedule() {
+        Timer timer = Trigger.timer;
+        if (timer != null) {
+            timer.scheduleAtFixedRate(new MinuteTicker(), PERIOD, PERIOD);
+        }
+    }
+
+    @Override
+    protected void doRun() {
+        final boolean progress = ProgressTracker.get().hasTrackedBuilds();
+        final boolean save = DigestReporter.needsSave();
+        if (!progress && !save) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        Computer.threadPoolForRemoting.submit(new Runnable() {
+            public void run() {
+                try {
+                    if (progress) {
+                        ProgressTracker.get().publishUpdates(System.currentTimeMillis());
+                    }
+                    if (save) {
+                        DigestReporter.save();
+                    }
+                } finally {
+                    running.set(false);
+                }
+            }
+        });
+    }
+}
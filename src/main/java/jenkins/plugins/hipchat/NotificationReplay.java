@@ -0,0 +1,132 @@
+package jenkins.plugins.hipchat;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import jenkins.model.Jenkins;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the notifications of past builds and sends synthetic test bursts,
+ * both through the regular notification path, and measures the outcome.
+ * Used by {@link HipChatManagementLink} and the CLI commands.
+ */
+@SuppressWarnings("rawtypes")
+public class NotificationReplay {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.PUBLISH);
+
+    static final String TIME_FORMAT = "yyyy-MM-dd HH:mm";
+    /**
+     * The HipChat v1 API allows about 100 requests per token in 5 minutes and
+     * a burst uses the production token, so it is capped at half of that to
+     * leave room for the real build notifications of the same window. A
+     * replay posts with the same tokens and is bounded the same way.
+     */
+    static final int MAX_BURST = 50;
+    static final int MAX_REPLAY = 50;
+
+    private static final Comparator<AbstractBuild> BY_START = new Comparator<AbstractBuild>() {
+        public int compare(AbstractBuild a, AbstractBuild b) {
+            return a.getTimeInMillis() < b.getTimeInMillis() ? -1 : a.getTimeInMillis() == b.getTimeInMillis() ? 0 : 1;
+        }
+    };
+
+    /**
+     * Sends the completion notification again for the builds started in
+     * [from, to) of the jobs using the notifier, oldest build first.
+     * Smart notification and routing rules apply as they would have.
+     * At most {@link #MAX_REPLAY} builds are replayed per call; the report
+     * says where to continue when the range holds more.
+     *
+     * @param jobGlob restricts the jobs by full name, or null for all
+     */
+    public static ThroughputReport replay(long from, long to, String jobGlob) {
+        Pattern job = jobGlob == null || jobGlob.trim().length() == 0 ? null : RoutingRules.compileGlob(jobGlob.trim());
+        ThroughputReport report = new ThroughputReport("Replay of builds started between " + format(from) + " and " + format(to));
+        Map<AbstractProject, ActiveNotifier> notifiers = new HashMap<AbstractProject, ActiveNotifier>();
+        List<AbstractBuild> builds = new ArrayList<AbstractBuild>();
+        for (AbstractProject project : Jenkins.getInstance().getAllItems(AbstractProject.class)) {
+            if (job != null && !job.matcher(project.getFullName()).matches()) {
+                continue;
+            }
+            HipChatNotifier notifier = (HipChatNotifier) project.getPublishersList().get(HipChatNotifier.class);
+            if (notifier == null) {
+                continue;
+            }
+            notifiers.put(project, new ActiveNotifier(notifier, report));
+            for (Object o : project.getBuilds().byTimestamp(from, to)) {
+                AbstractBuild build = (AbstractBuild) o;
+                if (!build.isBuilding()) {
+                    builds.add(build);
+                }
+            }
+        }
+        Collections.sort(builds, BY_START);
+        if (builds.size() > MAX_REPLAY) {
+            report.setNote((builds.size() - MAX_REPLAY) + " more builds not replayed; continue from "
+                    + format(builds.get(MAX_REPLAY).getTimeInMillis()));
+            builds = builds.subList(0, MAX_REPLAY);
+        }
+        for (AbstractBuild build : builds) {
+            notifiers.get(build.getProject()).completed(build);
+        }
+        report.finish();
+        logger.info("{0}", report);
+        return report;
+    }
+
+    /**
+     * Posts count test messages to a room with the global settings.
+     */
+    public static ThroughputReport testBurst(String room, int count) {
+        if (room == null || room.trim().length() == 0) {
+            throw new IllegalArgumentException("No room given");
+        }
+        if (count < 1 || count > MAX_BURST) {
+            throw new IllegalArgumentException("The number of messages must be between 1 and " + MAX_BURST);
+        }
+        HipChatConfig config = HipChatNotifier.DESCRIPTOR.getConfig();
+        String sendAs = config.getSendAs() == null ? HipChatConfig.DEFAULT_SEND_AS : config.getSendAs();
+        ThroughputReport report = new ThroughputReport("Test burst of " + count + " messages to " + room.trim());
+        StandardHipChatService service = new StandardHipChatService(config.getToken(), Collections.singletonList(room.trim()), sendAs);
+        service.setDeliveryListener(report);
+        for (int i = 1; i <= count; i++) {
+            service.publish("Test message " + i + " of " + count + " from " + Jenkins.getInstance().getDisplayName(), "gray", false);
+        }
+        report.finish();
+        logger.info("{0}", report);
+        return report;
+    }
+
+    static long parseTime(String value) {
+        if (value == null || value.trim().length() == 0) {
+            throw new IllegalArgumentException("Expected a time like " + TIME_FORMAT);
+        }
+        try {
+            return new SimpleDateFormat(TIME_FORMAT).parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Expected a time like " + TIME_FORMAT + " but got '" + value + "'");
+        }
+    }
+
+    /**
+     * Parses the end of a range, which defaults to now when left blank.
+     */
+    static long parseEndTime(String value) {
+        return value == null || value.trim().length() == 0 ? System.currentTimeMillis() : parseTime(value);
+    }
+
+    static String format(long time) {
+        return new SimpleDateFormat(TIME_FORMAT).format(new Date(time));
+    }
+}
@@ -0,0 +1,82 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.console.ConsoleLogFilter;
+import hudson.console.ConsoleNote;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.AbstractBuild;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Watches the build log of jobs with a progress marker and reports the
+ * stages it announces to the {@link ProgressTracker}.
+ */
+@Extension
+@SuppressWarnings("rawtypes")
+public class ProgressLogFilter extends ConsoleLogFilter {
+
+    @Override
+    public OutputStream decorateLogger(AbstractBuild build, OutputStream logger) throws IOException, InterruptedException {
+        if (build == null) {
+            return logger;
+        }
+        HipChatNotifier notifier = (HipChatNotifier) build.getProject().getPublishersList().get(HipChatNotifier.class);
+        if (notifier == null) {
+            return logger;
+        }
+        HipChatConfig config = notifier.getConfig();
+        if (!config.getProgressNotification() || config.getProgressMarker() == null) {
+            return logger;
+        }
+        return new MarkerOutputStream(build, config.getProgressMarker(), build.getCharset(), logger);
+    }
+
+    static String stageOf(Matcher matcher) {
+        String stage = matcher.groupCount() > 0 && matcher.group(1) != null ? matcher.group(1) : matcher.group();
+        stage = stage.trim();
+        return stage.length() == 0 ? null : stage;
+    }
+
+    private static final class MarkerOutputStream extends LineTransformationOutputStream {
+        private final AbstractBuild build;
+        private final Pattern marker;
+        private final Charset charset;
+        private final OutputStream out;
+
+        MarkerOutputStream(AbstractBuild build, Pattern marker, Charset charset, OutputStream out) {
+            this.build = build;
+            this.marker = marker;
+            this.charset = charset;
+            this.out = out;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            out.write(b, 0, len);
+            String line = ConsoleNote.removeNotes(new String(b, 0, len, charset));
+            Matcher matcher = marker.matcher(line);
+            if (matcher.find()) {
+                String stage = stageOf(matcher);
+                if (stage != null) {
+                    ProgressTracker.get().stage(build, stage);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package jenkins.plugins.hipchat;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides when a progress update may be sent, per job and room.
+ * <p>
+ * An update is allowed only when at least the minimum interval has passed
+ * since the last one for the same key, and either the stage changed or the
+ * percent complete moved by at least the threshold. A master running N
+ * builds therefore sends at most N * rooms updates per interval.
+ */
+public class ProgressThrottle {
+
+    private final ConcurrentMap<String, State> states = new ConcurrentHashMap<String, State>();
+
+    /**
+     * Starts throttling the given key, counting the build start as the last
+     * update. Keys that are already being throttled keep their state.
+     */
+    public void start(String key, long now) {
+        states.putIfAbsent(key, new State(now));
+    }
+
+    public void finish(String key) {
+        states.remove(key);
+    }
+
+    /**
+     * @param percent percent complete, or -1 if unknown
+     * @param stage   current stage, or null if unknown
+     * @return true if the caller should send the update now
+     */
+    public boolean tryAcquire(String key, long now, int percent, String stage, long minIntervalMillis, int threshold) {
+        State state = states.get(key);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            if (now - state.lastSent < minIntervalMillis) {
+                return false;
+            }
+            boolean stageChanged = stage != null && !stage.equals(state.stage);
+            boolean percentChanged = percent >= 0 && percent - state.percent >= threshold;
+            if (!stageChanged && !percentChanged) {
+                return false;
+            }
+            state.lastSent = now;
+            state.stage = stage;
+            if (percent >= 0) {
+                state.percent = percent;
+            }
+            return true;
+        }
+    }
+
+    int size() {
+        return states.size();
+    }
+
+    private static final class State {
+        private long lastSent;
+        private int percent;
+        private String stage;
+
+        State(long started) {
+            this.lastSent = started;
+        }
+    }
+}
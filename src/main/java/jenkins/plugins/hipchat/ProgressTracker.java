@@ -0,0 +1,137 @@
+package jenkins.plugins.hipchat;
+
+import hudson.model.AbstractBuild;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of the running builds that asked for progress updates and
+ * posts those updates from the {@link MinuteTicker}, so the build itself
+ * never waits on HipChat.
+ */
+@SuppressWarnings("rawtypes")
+public class ProgressTracker {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.PROGRESS);
+
+    private static final ProgressTracker INSTANCE = new ProgressTracker();
+
+    private final ConcurrentMap<AbstractBuild, Tracked> builds = new ConcurrentHashMap<AbstractBuild, Tracked>();
+    private final ProgressThrottle throttle = new ProgressThrottle();
+
+    public static ProgressTracker get() {
+        return INSTANCE;
+    }
+
+    public void started(AbstractBuild build, HipChatNotifier notifier) {
+        HipChatConfig config = notifier.getConfig();
+        if (!config.getProgressNotification()) {
+            return;
+        }
+        Tracked tracked = new Tracked(notifier, config.getRooms());
+        long now = System.currentTimeMillis();
+        for (String room : tracked.rooms) {
+            throttle.start(key(build, room), now);
+        }
+        builds.put(build, tracked);
+    }
+
+    public void completed(AbstractBuild build) {
+        Tracked tracked = builds.remove(build);
+        if (tracked != null && !isProjectTracked(build)) {
+            for (String room : tracked.rooms) {
+                throttle.finish(key(build, room));
+            }
+        }
+    }
+
+    /**
+     * Records the stage announced by a build log marker.
+     */
+    public void stage(AbstractBuild build, String stage) {
+        Tracked tracked = builds.get(build);
+        if (tracked != null) {
+            tracked.stage = stage;
+        }
+    }
+
+    boolean hasTrackedBuilds() {
+        return !builds.isEmpty();
+    }
+
+    public boolean isTracked(AbstractBuild build) {
+        return builds.containsKey(build);
+    }
+
+    // concurrent builds of a job share its throttle state
+    private boolean isProjectTracked(AbstractBuild build) {
+        for (AbstractBuild other : builds.keySet()) {
+            if (other.getProject() == build.getProject()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void publishUpdates(long now) {
+        for (Map.Entry<AbstractBuild, Tracked> e : builds.entrySet()) {
+            AbstractBuild build = e.getKey();
+            Tracked tracked = e.getValue();
+            if (!build.isBuilding()) {
+                completed(build);
+                continue;
+            }
+            HipChatConfig config = tracked.notifier.getConfig();
+            int percent = percentComplete(build, now);
+            String stage = tracked.stage;
+            List<String> rooms = new ArrayList<String>();
+            for (String room : tracked.rooms) {
+                if (throttle.tryAcquire(key(build, room), now, percent, stage,
+                        config.getProgressIntervalMillis(), config.getProgressThreshold())) {
+                    rooms.add(room);
+                }
+            }
+            if (rooms.isEmpty()) {
+                continue;
+            }
+            try {
+                new ActiveNotifier(tracked.notifier).progress(build, rooms, percent, stage);
+            } catch (RuntimeException ex) {
+                logger.warnRateLimited(build.getProject().getFullName(), "Unable to post HipChat progress update", ex);
+            }
+        }
+    }
+
+    /**
+     * @return the elapsed share of the estimated duration, capped at 99, or -1 without an estimate
+     */
+    static int percentComplete(AbstractBuild build, long now) {
+        return percentComplete(build.getEstimatedDuration(), now - build.getStartTimeInMillis());
+    }
+
+    static int percentComplete(long estimated, long elapsed) {
+        if (estimated <= 0 || elapsed < 0) {
+            return -1;
+        }
+        return (int) Math.min(99, elapsed * 100 / estimated);
+    }
+
+    private static String key(AbstractBuild build, String room) {
+        return build.getProject().getFullName() + "\n" + room;
+    }
+
+    private static final class Tracked {
+        private final HipChatNotifier notifier;
+        private final List<String> rooms;
+        private volatile String stage;
+
+        Tracked(HipChatNotifier notifier, List<String> rooms) {
+            this.notifier = notifier;
+            this.rooms = rooms;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import jenkins.model.Jenkins;
+
+import org.kohsuke.args4j.Option;
+
+/**
+ * {@code hipchat-replay}: replays the notifications of the builds started
+ * in a time range and prints the throughput report.
+ */
+@Extension
+public class ReplayCommand extends CLICommand {
+
+    @Option(name = "--from", required = true, usage = "Start of the range, as " + NotificationReplay.TIME_FORMAT)
+    public String from;
+
+    @Option(name = "--to", usage = "End of the range, as " + NotificationReplay.TIME_FORMAT + "; defaults to now")
+    public String to;
+
+    @Option(name = "--job", usage = "Only replay jobs whose full name matches this glob")
+    public String job;
+
+    @Override
+    public String getName() {
+        return "hipchat-replay";
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Replays HipChat notifications of past builds and reports the throughput";
+    }
+
+    @Override
+    protected int run() throws Exception {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        try {
+            long start = NotificationReplay.parseTime(from);
+            long end = NotificationReplay.parseEndTime(to);
+            ThroughputReport report = NotificationReplay.replay(start, end, job);
+            stdout.println(report);
+            return report.getErrors() == 0 ? 0 : 1;
+        } catch (IllegalArgumentException e) {
+            stderr.println(e.getMessage());
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package jenkins.plugins.hipchat;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.Cause;
+import hudson.model.Node;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The facts about a build event that {@link RoutingRules} match against.
+ * Extracted once per event so that rule evaluation never touches the build,
+ * except for the branch, which needs the build environment and is only
+ * resolved the first time a rule asks for it.
+ */
+public final class RoutingContext {
+
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.ROUTING);
+
+    /** Pseudo result used for build start events. */
+    public static final String STARTED = "STARTED";
+
+    private final String result;
+    private final String jobName;
+    private final Set<String> labels;
+    private final List<String> causes;
+    private final long durationMillis;
+    @SuppressWarnings("rawtypes")
+    private final AbstractBuild build;
+    private String branch;
+    private boolean branchResolved;
+
+    @SuppressWarnings("rawtypes")
+    public RoutingContext(String result, String jobName, String branch, Set<String> labels, List<String> causes, long durationMillis) {
+        this(result, jobName, (AbstractBuild) null, labels, causes, durationMillis);
+        this.branch = branch;
+        this.branchResolved = true;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private RoutingContext(String result, String jobName, AbstractBuild build, Set<String> labels, List<String> causes, long durationMillis) {
+        this.result = result;
+        this.jobName = jobName;
+        this.build = build;
+        this.labels = labels == null ? Collections.<String>emptySet() : labels;
+        this.causes = causes == null ? Collections.<String>emptyList() : causes;
+        this.durationMillis = durationMillis;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static RoutingContext forBuild(AbstractBuild r, boolean started) {
+        String result;
+        if (started) {
+            result = STARTED;
+        } else {
+            Result res = r.getResult();
+            result = res == null ? Result.NOT_BUILT.toString() : res.toString();
+        }
+
+        Set<String> labels = new HashSet<String>();
+        Node node = r.getBuiltOn();
+        if (node != null) {
+            for (LabelAtom atom : node.getAssignedLabels()) {
+                labels.add(atom.getName());
+            }
+        }
+
+        List<String> causes = new ArrayList<String>();
+        for (Object o : r.getCauses()) {
+            causes.add(((Cause) o).getClass().getSimpleName());
+        }
+
+        return new RoutingContext(result, r.getProject().getFullName(), r, labels, causes, started ? 0 : r.getDuration());
+    }
+
+    @SuppressWarnings("rawtypes")
+    static String getBranch(AbstractBuild r) {
+        try {
+            EnvVars env = r.getEnvironment(TaskListener.NULL);
+            String branch = env.get("GIT_BRANCH");
+            if (branch == null) {
+                branch = env.get("BRANCH_NAME");
+            }
+            return normalizeBranch(branch);
+        } catch (IOException e) {
+            logger.debug("Unable to read build environment of {0}: {1}", r.getFullDisplayName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    static String normalizeBranch(String branch) {
+        if (branch == null) {
+            return null;
+        }
+        if (branch.startsWith("refs/heads/")) {
+            return branch.substring("refs/heads/".length());
+        }
+        if (branch.startsWith("origin/")) {
+            return branch.substring("origin/".length());
+        }
+        return branch;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    /**
+     * @return the normalized branch, resolved from the build environment on first use
+     */
+    public String getBranch() {
+        if (!branchResolved) {
+            branch = getBranch(build);
+            branchResolved = true;
+        }
+        return branch;
+    }
+
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    public List<String> getCauses() {
+        return causes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
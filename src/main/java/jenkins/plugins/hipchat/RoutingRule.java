@@ -0,0 +1,133 @@
+package jenkins.plugins.hipchat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A single compiled routing rule. Instances are immutable and are only
+ * created by {@link RoutingRules#parse(String)}.
+ */
+public final class RoutingRule {
+
+    /** Room placeholder that expands to the rooms configured on the job. */
+    public static final String JOB_ROOM = "$JOB";
+
+    private final int ordinal;
+    private final Set<String> results;
+    private final String exactJob;
+    private final Pattern job;
+    private final RoutingRules.IndexField indexField;
+    private final List<String> indexValues;
+    private final Pattern branch;
+    private final Pattern label;
+    private final Pattern cause;
+    private final long minDurationMillis;
+    private final long maxDurationMillis;
+    private final List<String> rooms;
+    private final String color;
+    private final Boolean notify;
+
+    RoutingRule(int ordinal, Set<String> results, String exactJob, Pattern job,
+                RoutingRules.IndexField indexField, List<String> indexValues,
+                Pattern branch, Pattern label, Pattern cause, long minDurationMillis, long maxDurationMillis,
+                List<String> rooms, String color, Boolean notify) {
+        this.ordinal = ordinal;
+        this.results = Collections.unmodifiableSet(results);
+        this.exactJob = exactJob;
+        this.job = job;
+        this.indexField = indexField;
+        this.indexValues = indexValues == null ? null : Collections.unmodifiableList(indexValues);
+        this.branch = branch;
+        this.label = label;
+        this.cause = cause;
+        this.minDurationMillis = minDurationMillis;
+        this.maxDurationMillis = maxDurationMillis;
+        this.rooms = Collections.unmodifiableList(rooms);
+        this.color = color;
+        this.notify = notify;
+    }
+
+    /**
+     * Checks every condition except the result, which the index in
+     * {@link RoutingRules} has already resolved.
+     */
+    boolean matches(RoutingContext ctx) {
+        if (exactJob != null && !exactJob.equals(ctx.getJobName())) {
+            return false;
+        }
+        if (job != null && !job.matcher(ctx.getJobName()).matches()) {
+            return false;
+        }
+        if (branch != null && (ctx.getBranch() == null || !branch.matcher(ctx.getBranch()).matches())) {
+            return false;
+        }
+        if (label != null && !matchesAny(label, ctx.getLabels())) {
+            return false;
+        }
+        if (cause != null && !matchesAny(cause, ctx.getCauses())) {
+            return false;
+        }
+        if (minDurationMillis >= 0 && ctx.getDurationMillis() < minDurationMillis) {
+            return false;
+        }
+        if (maxDurationMillis >= 0 && ctx.getDurationMillis() > maxDurationMillis) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(Pattern pattern, Iterable<String> values) {
+        for (String value : values) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    Set<String> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the condition {@link RoutingRules} indexes this rule by, or
+     *         null when the rule has none of the indexable conditions
+     */
+    RoutingRules.IndexField getIndexField() {
+        return indexField;
+    }
+
+    /**
+     * @return the literals and globs of the indexed condition
+     */
+    List<String> getIndexValues() {
+        return indexValues;
+    }
+
+    /**
+     * @return the rooms to notify, possibly including {@link #JOB_ROOM}
+     */
+    public List<String> getRooms() {
+        return rooms;
+    }
+
+    /**
+     * @return the message color, or null to use the build color
+     */
+    public String getColor() {
+        return color;
+    }
+
+    /**
+     * @return whether to notify room members, or null to derive it from the color
+     */
+    public Boolean getNotify() {
+        return notify;
+    }
+}
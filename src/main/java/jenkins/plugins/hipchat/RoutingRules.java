@@ -0,0 +1,425 @@
+package jenkins.plugins.hipchat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Routing rules compiled into an index keyed by result and then by the first
+ * of the job, label, cause and branch conditions a rule has.
+ * <p>
+ * Within a result, literal values are looked up in a map and globs are kept
+ * in a trie under their literal prefix before the first wildcard, so an
+ * event only evaluates the rules whose indexed condition can match. Rules
+ * with none of these conditions, e.g. only a duration, are evaluated for
+ * every event of their results, as are globs starting with a wildcard. The
+ * branch is only resolved when a branch-indexed rule or a candidate rule
+ * needs it.
+ * <p>
+ * Rules are written one per line as whitespace separated {@code key=value}
+ * pairs, for example:
+ * <pre>
+ * result=FAILURE,UNSTABLE job=release-* branch=master room=oncall,$JOB color=red notify=true
+ * result=SUCCESS cause=SCMTriggerCause minDuration=30m room=builds notify=false
+ * </pre>
+ * Lines starting with {@code #} are comments. Globs accept {@code *} and
+ * {@code ?}; comma separated values match any of them.
+ */
+public final class RoutingRules {
+
+    private static final List<String> RESULTS = Arrays.asList(
+            "SUCCESS", "UNSTABLE", "FAILURE", "NOT_BUILT", "ABORTED", RoutingContext.STARTED);
+
+    private static final Set<String> COLORS = new HashSet<String>(Arrays.asList(
+            "yellow", "red", "green", "purple", "gray", "random"));
+
+    public static final RoutingRules EMPTY = new RoutingRules("", Collections.<RoutingRule>emptyList());
+
+    private final String source;
+    private final List<RoutingRule> rules;
+    private final Map<String, Bucket> byResult;
+
+    /** Conditions rules are indexed by, in order of preference. */
+    enum IndexField {
+        JOB, LABEL, CAUSE, BRANCH
+    }
+
+    private RoutingRules(String source, List<RoutingRule> rules) {
+        this.source = source;
+        this.rules = Collections.unmodifiableList(rules);
+        this.byResult = new HashMap<String, Bucket>();
+        for (String result : RESULTS) {
+            Bucket bucket = new Bucket();
+            for (RoutingRule rule : rules) {
+                if (rule.getResults().isEmpty() || rule.getResults().contains(result)) {
+                    bucket.add(rule);
+                }
+            }
+            if (!bucket.isEmpty()) {
+                byResult.put(result, bucket);
+            }
+        }
+    }
+
+    /**
+     * Compiles the given rule text.
+     *
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static RoutingRules parse(String text) {
+        if (text == null || text.trim().length() == 0) {
+            return EMPTY;
+        }
+        List<RoutingRule> rules = new ArrayList<RoutingRule>();
+        String[] lines = text.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(rules.size(), line));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Routing rule on line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new RoutingRules(text, rules);
+    }
+
+    private static RoutingRule parseRule(int ordinal, String line) {
+        Set<String> results = new HashSet<String>();
+        String exactJob = null;
+        Pattern job = null;
+        Map<IndexField, String> indexable = new EnumMap<IndexField, String>(IndexField.class);
+        Pattern branch = null;
+        Pattern label = null;
+        Pattern cause = null;
+        long minDuration = -1;
+        long maxDuration = -1;
+        List<String> rooms = new ArrayList<String>();
+        String color = null;
+        Boolean notify = null;
+
+        for (String token : line.split("\\s+")) {
+            int eq = token.indexOf('=');
+            if (eq <= 0 || eq == token.length() - 1) {
+                throw new IllegalArgumentException("expected key=value but got '" + token + "'");
+            }
+            String key = token.substring(0, eq);
+            String value = token.substring(eq + 1);
+            if (key.equals("result")) {
+                for (String result : splitList(value)) {
+                    String normalized = result.toUpperCase();
+                    if (!RESULTS.contains(normalized)) {
+                        throw new IllegalArgumentException("unknown result '" + result + "'");
+                    }
+                    results.add(normalized);
+                }
+            } else if (key.equals("job")) {
+                if (isGlob(value)) {
+                    job = compileGlob(value);
+                } else {
+                    exactJob = value;
+                }
+                indexable.put(IndexField.JOB, value);
+            } else if (key.equals("branch")) {
+                branch = compileGlob(value);
+                indexable.put(IndexField.BRANCH, value);
+            } else if (key.equals("label")) {
+                label = compileGlob(value);
+                indexable.put(IndexField.LABEL, value);
+            } else if (key.equals("cause")) {
+                cause = compileGlob(value);
+                indexable.put(IndexField.CAUSE, value);
+            } else if (key.equals("minDuration")) {
+                minDuration = parseDuration(value);
+            } else if (key.equals("maxDuration")) {
+                maxDuration = parseDuration(value);
+            } else if (key.equals("room")) {
+                rooms.addAll(splitList(value));
+            } else if (key.equals("color")) {
+                color = value.toLowerCase();
+                if (!COLORS.contains(color)) {
+                    throw new IllegalArgumentException("unknown color '" + value + "'");
+                }
+            } else if (key.equals("notify")) {
+                if (value.equals("true")) {
+                    notify = Boolean.TRUE;
+                } else if (value.equals("false")) {
+                    notify = Boolean.FALSE;
+                } else {
+                    throw new IllegalArgumentException("expected notify=true or notify=false but got '" + value + "'");
+                }
+            } else {
+                throw new IllegalArgumentException("unknown key '" + key + "'");
+            }
+        }
+
+        if (rooms.isEmpty()) {
+            throw new IllegalArgumentException("no room given");
+        }
+        IndexField indexField = null;
+        List<String> indexValues = null;
+        if (!indexable.isEmpty()) {
+            // the EnumMap iterates in order of preference
+            Map.Entry<IndexField, String> first = indexable.entrySet().iterator().next();
+            indexField = first.getKey();
+            indexValues = splitList(first.getValue());
+        }
+        return new RoutingRule(ordinal, results, exactJob, job, indexField, indexValues, branch, label, cause,
+                minDuration, maxDuration, rooms, color, notify);
+    }
+
+    /**
+     * @return the matching rules in the order they were written
+     */
+    public List<RoutingRule> match(RoutingContext ctx) {
+        Bucket bucket = byResult.get(ctx.getResult());
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        List<RoutingRule> candidates = new ArrayList<RoutingRule>();
+        bucket.collect(ctx, candidates);
+        Collections.sort(candidates, BY_ORDINAL);
+
+        List<RoutingRule> matched = new ArrayList<RoutingRule>();
+        RoutingRule previous = null;
+        for (RoutingRule rule : candidates) {
+            // a rule with several alternatives or matching several labels can be collected more than once
+            if (rule != previous && rule.matches(ctx)) {
+                matched.add(rule);
+            }
+            previous = rule;
+        }
+        return matched;
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    static List<String> splitList(String value) {
+        Set<String> values = new LinkedHashSet<String>();
+        for (String v : value.split(",")) {
+            v = v.trim();
+            if (v.length() > 0) {
+                values.add(v);
+            }
+        }
+        return new ArrayList<String>(values);
+    }
+
+    private static final Comparator<RoutingRule> BY_ORDINAL = new Comparator<RoutingRule>() {
+        public int compare(RoutingRule a, RoutingRule b) {
+            return a.getOrdinal() < b.getOrdinal() ? -1 : a.getOrdinal() == b.getOrdinal() ? 0 : 1;
+        }
+    };
+
+    private static String literalPrefix(String glob) {
+        int i = 0;
+        while (i < glob.length() && glob.charAt(i) != '*' && glob.charAt(i) != '?') {
+            i++;
+        }
+        return glob.substring(0, i);
+    }
+
+    private static boolean isGlob(String value) {
+        return hasWildcard(value) || value.indexOf(',') != -1;
+    }
+
+    private static boolean hasWildcard(String value) {
+        return value.indexOf('*') != -1 || value.indexOf('?') != -1;
+    }
+
+    static Pattern compileGlob(String value) {
+        StringBuilder regex = new StringBuilder();
+        for (String glob : splitList(value)) {
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            StringBuilder literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    static long parseDuration(String value) {
+        long unit = 1000L;
+        String number = value;
+        char last = value.charAt(value.length() - 1);
+        if (last == 's') {
+            number = value.substring(0, value.length() - 1);
+        } else if (last == 'm') {
+            unit = 60 * 1000L;
+            number = value.substring(0, value.length() - 1);
+        } else if (last == 'h') {
+            unit = 60 * 60 * 1000L;
+            number = value.substring(0, value.length() - 1);
+        }
+        try {
+            long amount = Long.parseLong(number);
+            if (amount < 0) {
+                throw new IllegalArgumentException("negative duration '" + value + "'");
+            }
+            return amount * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid duration '" + value + "'");
+        }
+    }
+
+    private static final class Bucket {
+        private final Map<IndexField, ValueIndex> indexes = new EnumMap<IndexField, ValueIndex>(IndexField.class);
+        private final List<RoutingRule> unindexed = new ArrayList<RoutingRule>();
+
+        void add(RoutingRule rule) {
+            if (rule.getIndexField() == null) {
+                unindexed.add(rule);
+                return;
+            }
+            ValueIndex index = indexes.get(rule.getIndexField());
+            if (index == null) {
+                index = new ValueIndex();
+                indexes.put(rule.getIndexField(), index);
+            }
+            for (String value : rule.getIndexValues()) {
+                index.add(value, rule);
+            }
+        }
+
+        void collect(RoutingContext ctx, List<RoutingRule> into) {
+            into.addAll(unindexed);
+            for (Map.Entry<IndexField, ValueIndex> e : indexes.entrySet()) {
+                ValueIndex index = e.getValue();
+                switch (e.getKey()) {
+                    case JOB:
+                        index.collect(ctx.getJobName(), into);
+                        break;
+                    case LABEL:
+                        for (String label : ctx.getLabels()) {
+                            index.collect(label, into);
+                        }
+                        break;
+                    case CAUSE:
+                        for (String cause : ctx.getCauses()) {
+                            index.collect(cause, into);
+                        }
+                        break;
+                    case BRANCH:
+                        String branch = ctx.getBranch();
+                        if (branch != null) {
+                            index.collect(branch, into);
+                        }
+                        break;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return unindexed.isEmpty() && indexes.isEmpty();
+        }
+    }
+
+    /**
+     * The rules indexed by one condition: literal values in a map, globs in
+     * a trie under their literal prefix.
+     */
+    private static final class ValueIndex {
+        private final Map<String, List<RoutingRule>> literals = new HashMap<String, List<RoutingRule>>();
+        private final PrefixNode globs = new PrefixNode();
+
+        void add(String value, RoutingRule rule) {
+            if (hasWildcard(value)) {
+                globs.add(literalPrefix(value), 0, rule);
+                return;
+            }
+            List<RoutingRule> list = literals.get(value);
+            if (list == null) {
+                list = new ArrayList<RoutingRule>();
+                literals.put(value, list);
+            }
+            if (!list.contains(rule)) {
+                list.add(rule);
+            }
+        }
+
+        void collect(String value, List<RoutingRule> into) {
+            List<RoutingRule> list = literals.get(value);
+            if (list != null) {
+                into.addAll(list);
+            }
+            globs.collect(value, into);
+        }
+    }
+
+    /**
+     * Trie of globs keyed by their literal prefix. Collecting for a value
+     * walks it once and picks up the rules of every node on the way, which
+     * are exactly the globs whose prefix the value starts with.
+     */
+    private static final class PrefixNode {
+        private final Map<Character, PrefixNode> children = new HashMap<Character, PrefixNode>();
+        private final List<RoutingRule> rules = new ArrayList<RoutingRule>();
+
+        void add(String prefix, int depth, RoutingRule rule) {
+            if (depth == prefix.length()) {
+                if (!rules.contains(rule)) {
+                    rules.add(rule);
+                }
+                return;
+            }
+            Character c = prefix.charAt(depth);
+            PrefixNode child = children.get(c);
+            if (child == null) {
+                child = new PrefixNode();
+                children.put(c, child);
+            }
+            child.add(prefix, depth + 1, rule);
+        }
+
+        void collect(String name, List<RoutingRule> into) {
+            PrefixNode node = this;
+            int depth = 0;
+            while (node != null) {
+                into.addAll(node.rules);
+                if (depth == name.length()) {
+                    break;
+                }
+                node = node.children.get(name.charAt(depth++));
+            }
+        }
+
+        boolean isEmpty() {
+            return rules.isEmpty() && children.isEmpty();
+        }
+    }
+}
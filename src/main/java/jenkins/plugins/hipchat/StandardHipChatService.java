@@ -3,17 +3,19 @@ package jenkins.plugins.hipchat;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.PostMethod;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.List;
 
 public class StandardHipChatService implements HipChatService {
 
-    private static final Logger logger = Logger.getLogger(StandardHipChatService.class.getName());
+    private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.PUBLISH);
 
-    private String host = "api.hipchat.com";
+    static final String DEFAULT_HOST = "api.hipchat.com";
+
+    private String host = DEFAULT_HOST;
     private String token;
     private String[] roomIds;
     private String from;
+    private DeliveryListener listener;
 
     public StandardHipChatService(String token, String roomId, String from) {
         super();
@@ -22,38 +24,66 @@ public class StandardHipChatService implements HipChatService {
         this.from = from;
     }
 
+    public StandardHipChatService(String token, List<String> roomIds, String from) {
+        super();
+        this.token = token;
+        this.roomIds = roomIds.toArray(new String[roomIds.size()]);
+        this.from = from;
+    }
+
     public void publish(String message) {
         publish(message, "yellow");
     }
 
     public void publish(String message, String color) {
+        publish(message, color, shouldNotify(color));
+    }
+
+    public void publish(String message, String color, boolean notify) {
         for (String roomId : roomIds) {
-            logger.info("Posting: " + from + " to " + roomId + ": " + message + " " + color);
+            logger.debug("Posting to {0} as {1} in {2}: {3}", roomId, from, color, HipChatLog.summarize(message));
             HttpClient client = new HttpClient();
             String url = "https://" + host + "/v1/rooms/message?auth_token=" + token;
             PostMethod post = new PostMethod(url);
+            boolean success = false;
+            long start = System.nanoTime();
 
             try {
                 post.addParameter("from", from);
                 post.addParameter("room_id", roomId);
                 post.addParameter("message", message);
                 post.addParameter("color", color);
-                post.addParameter("notify", shouldNotify(color));
+                post.addParameter("notify", notify ? "1" : "0");
                 post.getParams().setContentCharset("UTF-8");
-                client.executeMethod(post);
+                int status = client.executeMethod(post);
+                if (status >= 400) {
+                    logger.warnRateLimited(roomId, "HipChat returned HTTP " + status + " for room " + roomId, null);
+                } else {
+                    success = true;
+                }
             } catch (Exception e) {
-                logger.log(Level.WARNING, "Error posting to HipChat", e);
+                logger.warnRateLimited(roomId, "Error posting to HipChat room " + roomId, e);
             } finally {
                 post.releaseConnection();
+                if (listener != null) {
+                    listener.delivered(roomId, System.nanoTime() - start, success);
+                }
             }
         }
     }
 
-    private String shouldNotify(String color) {
-        return color.equalsIgnoreCase("green") ? "0" : "1";
+    private boolean shouldNotify(String color) {
+        return !color.equalsIgnoreCase("green");
     }
 
     void setHost(String host) {
         this.host = host;
     }
+
+    /**
+     * @param listener notified of every post, or null
+     */
+    public void setDeliveryListener(DeliveryListener listener) {
+        this.listener = listener;
+    }
 }
@@ -0,0 +1,45 @@
+package jenkins.plugins.hipchat;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+import jenkins.model.Jenkins;
+
+import org.kohsuke.args4j.Option;
+
+/**
+ * {@code hipchat-test-burst}: posts a number of test messages to a room
+ * and prints the throughput report.
+ */
+@Extension
+public class TestBurstCommand extends CLICommand {
+
+    @Option(name = "--room", required = true, usage = "Room to post to")
+    public String room;
+
+    @Option(name = "--count", usage = "Number of messages to send, at most " + NotificationReplay.MAX_BURST
+            + "; they count against the rate limit of the global API token")
+    public int count = 10;
+
+    @Override
+    public String getName() {
+        return "hipchat-test-burst";
+    }
+
+    @Override
+    public String getShortDescription() {
+        return "Sends test messages to a HipChat room and reports the throughput";
+    }
+
+    @Override
+    protected int run() throws Exception {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        try {
+            ThroughputReport report = NotificationReplay.testBurst(room, count);
+            stdout.println(report);
+            return report.getErrors() == 0 ? 0 : 1;
+        } catch (IllegalArgumentException e) {
+            stderr.println(e.getMessage());
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package jenkins.plugins.hipchat;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the deliveries of a replay or test burst and reports the
+ * achieved rate, latency percentiles and errors.
+ */
+public class ThroughputReport implements DeliveryListener {
+
+    private final String title;
+    private final long startNanos;
+    private long endNanos = -1;
+    private long[] latencies = new long[64];
+    private int messages;
+    private int errors;
+    private String note;
+
+    public ThroughputReport(String title) {
+        this(title, System.nanoTime());
+    }
+
+    ThroughputReport(String title, long startNanos) {
+        this.title = title;
+        this.startNanos = startNanos;
+    }
+
+    public synchronized void delivered(String room, long elapsedNanos, boolean success) {
+        if (messages == latencies.length) {
+            latencies = Arrays.copyOf(latencies, messages * 2);
+        }
+        latencies[messages++] = elapsedNanos;
+        if (!success) {
+            errors++;
+        }
+    }
+
+    public void finish() {
+        finish(System.nanoTime());
+    }
+
+    synchronized void finish(long endNanos) {
+        this.endNanos = endNanos;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Adds a remark to the report, such as a replay being cut short.
+     */
+    public synchronized void setNote(String note) {
+        this.note = note;
+    }
+
+    public synchronized int getMessages() {
+        return messages;
+    }
+
+    public synchronized int getErrors() {
+        return errors;
+    }
+
+    public synchronized long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((endNanos < 0 ? System.nanoTime() : endNanos) - startNanos);
+    }
+
+    public synchronized double getMessagesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : messages * 1000.0 / elapsed;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the nearest-rank latency percentile in milliseconds, or 0 without deliveries
+     */
+    public synchronized long getLatencyMillis(double percentile) {
+        if (messages == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(latencies, messages);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * messages);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(messages, rank) - 1)]);
+    }
+
+    @Override
+    public synchronized String toString() {
+        String report = String.format(Locale.ENGLISH,
+                "%s: %d messages in %.1f s (%.2f msg/s), %d errors, latency p50 %d ms, p90 %d ms, p99 %d ms, max %d ms",
+                title, messages, getElapsedMillis() / 1000.0, getMessagesPerSecond(), errors,
+                getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(100));
+        return note == null ? report : report + " (" + note + ")";
+    }
+}
@@ -0,0 +1,145 @@
+package jenkins.plugins.hipchat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size top-K summary of keyed values.
+ * <p>
+ * {@link #add(String, long)} implements the Space-Saving algorithm: when
+ * the table is full, the smallest entry is replaced and the new key inherits
+ * its count, so the heaviest keys are kept with a bounded over-estimate.
+ * {@link #max(String, long)} keeps the keys with the largest single value.
+ * Memory is proportional to the capacity, whatever the number of keys.
+ */
+public class TopK {
+
+    private final String[] keys;
+    private final long[] values;
+    private int size;
+
+    public TopK(int capacity) {
+        this.keys = new String[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Adds weight to the running total of a key.
+     */
+    public void add(String key, long weight) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] += weight;
+        } else if (size < keys.length) {
+            keys[size] = key;
+            values[size++] = weight;
+        } else if (keys.length > 0) {
+            i = indexOfMin();
+            keys[i] = key;
+            values[i] += weight;
+        }
+    }
+
+    /**
+     * Records a value for a key, keeping the largest value seen per key.
+     */
+    public void max(String key, long value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            values[i] = Math.max(values[i], value);
+        } else if (size < keys.length) {
+            keys[size] = key;
+            values[size++] = value;
+        } else if (keys.length > 0) {
+            i = indexOfMin();
+            if (value > values[i]) {
+                keys[i] = key;
+                values[i] = value;
+            }
+        }
+    }
+
+    /**
+     * Folds another summary into this one by adding its values.
+     */
+    public void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.keys[i], other.values[i]);
+        }
+    }
+
+    /**
+     * Folds another summary into this one by keeping the largest values.
+     */
+    public void maxAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            max(other.keys[i], other.values[i]);
+        }
+    }
+
+    /**
+     * @return up to n entries, largest value first
+     */
+    public List<Entry> top(int n) {
+        Entry[] entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry(keys[i], values[i]);
+        }
+        Arrays.sort(entries);
+        List<Entry> top = new ArrayList<Entry>(Math.min(n, size));
+        for (int i = 0; i < entries.length && i < n; i++) {
+            top.add(entries[i]);
+        }
+        return top;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int indexOf(String key) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfMin() {
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (values[i] < values[min]) {
+                min = i;
+            }
+        }
+        return min;
+    }
+
+    public static final class Entry implements Comparable<Entry> {
+        private final String key;
+        private final long value;
+
+        Entry(String key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public int compareTo(Entry o) {
+            return value < o.value ? 1 : value > o.value ? -1 : key.compareTo(o.key);
+        }
+    }
+}
@@ -7,7 +7,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.logging.Logger;
 
 import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
@@ -32,7 +31,7 @@ import hudson.model.User;
 
 public class UpstreamFailureCause
 {
-  private static final Logger logger = Logger.getLogger(ActiveNotifier.class.getName());
+  private static final HipChatLog logger = HipChatLog.get(HipChatLog.Category.UPSTREAM);
 
   private final AbstractBuild build;
 
@@ -44,15 +43,13 @@ public class UpstreamFailureCause
   public Set<User> getUpstream()
   {
     if (build.getResult() == Result.SUCCESS || build.getCause(Cause.UpstreamCause.class) == null) {
-      logger.info("upstream: build is success or no cause recorded");
+      logger.debug("upstream: build is success or no cause recorded");
       return Collections.emptySet();
     }
 
     ArrayList<Cause.UpstreamCause> upstreamCauses = getUpstreamCauses(build);
-    for(Cause.UpstreamCause cause: upstreamCauses) {
-      logger.info("upstream: found cause project " + cause.getUpstreamProject() + " -> " + cause.getUpstreamBuild());
-    }
-    
+    logger.debug("upstream: found {0} causes", upstreamCauses.size());
+
     return getCulprits(upstreamCauses);
   }
 
@@ -64,15 +61,13 @@ public class UpstreamFailureCause
 
     for (Cause.UpstreamCause cause : upstreamCauses) {
       if (cause != null) {
-        logger.info("upstream culprits: cause " + cause.getUpstreamProject() + " -> " + cause.getUpstreamBuild());
         Item item = Jenkins.getInstance().getItemByFullName(cause.getUpstreamProject());
         if (item instanceof AbstractProject) {
-          logger.info("upstream culprits: found item " + item.getFullDisplayName());
           AbstractBuild build = ((AbstractProject)item).getBuildByNumber(cause.getUpstreamBuild());
           if (build != null) {
-            logger.info("upstream culprits: found build " + build.getDisplayName());
-            logger.info("upstream culprits: adding culprit " + build.getCulprits());
-            culprits.addAll(build.getCulprits());
+            Set<User> buildCulprits = build.getCulprits();
+            logger.debug("upstream culprits: {0} from {1}", buildCulprits.size(), build.getFullDisplayName());
+            culprits.addAll(buildCulprits);
           }
         }
       }
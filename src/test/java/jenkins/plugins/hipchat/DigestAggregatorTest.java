@@ -0,0 +1,76 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class DigestAggregatorTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final List<String> NONE = Collections.emptyList();
+
+    private final DigestAggregator stats = new DigestAggregator();
+
+    @Test
+    public void aggregatesBucketsInRange() {
+        List<String> rooms = Arrays.asList("dev");
+        stats.record(rooms, 0, "core", "SUCCESS", 1000, false, NONE);
+        stats.record(rooms, 0, "core", "FAILURE", 3000, true, Arrays.asList("@jane"));
+        stats.record(rooms, DAY, "web", "UNSTABLE", 2000, true, Arrays.asList("@jane", "@joe"));
+        stats.record(rooms, 2 * DAY, "web", "SUCCESS", 1000, false, NONE);
+
+        DigestBucket bucket = stats.aggregate("dev", 0, 2 * DAY);
+        assertEquals(3, bucket.getBuilds());
+        assertEquals(1, bucket.getFailures());
+        assertEquals(1, bucket.getUnstable());
+        assertEquals(6000, bucket.getTotalDuration());
+        assertEquals("core", bucket.getSlowestJobs().top(1).get(0).getKey());
+        assertEquals("@jane", bucket.getCulprits().top(1).get(0).getKey());
+        assertEquals(2, bucket.getCulprits().top(1).get(0).getValue());
+        assertEquals(2, bucket.getFlakyJobs().size());
+
+        assertNull(stats.aggregate("ops", 0, 2 * DAY));
+    }
+
+    @Test
+    public void prunesOldBuckets() {
+        stats.record(Arrays.asList("dev"), 0, "core", "SUCCESS", 1000, false, NONE);
+        stats.record(Arrays.asList("dev"), DAY, "core", "SUCCESS", 1000, false, NONE);
+        assertTrue(stats.clearDirty());
+        assertFalse(stats.clearDirty());
+
+        stats.prune(DAY);
+        assertTrue(stats.clearDirty());
+        assertNull(stats.aggregate("dev", 0, DAY));
+        assertEquals(1, stats.aggregate("dev", 0, 2 * DAY).getBuilds());
+
+        stats.prune(2 * DAY);
+        assertNull(stats.aggregate("dev", 0, 2 * DAY));
+    }
+
+    @Test
+    public void computesDayAndWeekStarts() {
+        Calendar c = Calendar.getInstance(UTC);
+        c.clear();
+        c.set(2026, Calendar.OCTOBER, 15, 13, 45); // a Thursday
+        long thursday = c.getTimeInMillis();
+
+        c.set(2026, Calendar.OCTOBER, 15, 0, 0);
+        assertEquals(c.getTimeInMillis(), DigestAggregator.dayStart(thursday, 0, UTC));
+        c.set(2026, Calendar.OCTOBER, 14, 0, 0);
+        assertEquals(c.getTimeInMillis(), DigestAggregator.dayStart(thursday, -1, UTC));
+        c.set(2026, Calendar.OCTOBER, 12, 0, 0);
+        assertEquals(c.getTimeInMillis(), DigestAggregator.weekStart(thursday, UTC));
+        assertEquals(c.getTimeInMillis(), DigestAggregator.weekStart(c.getTimeInMillis(), UTC));
+    }
+}
@@ -0,0 +1,52 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class HipChatConfigTest {
+
+    private final HipChatConfig global = new HipChatConfig("token", "Dev Team, 1234", "http://jenkins", "Jenkins",
+            true, false, RoutingRules.parse("result=FAILURE room=oncall"));
+
+    @Test
+    public void parsesRoomsAndNormalizesUrl() {
+        assertEquals(Arrays.asList("Dev Team", "1234"), global.getRooms());
+        assertEquals("http://jenkins/", global.getBuildServerUrl());
+        assertNull(HipChatConfig.normalizeUrl(null));
+    }
+
+    @Test
+    public void jobFallsBackToGlobalValues() {
+        HipChatConfig job = HipChatConfig.forJob(global, null, "", null, " ", false, true);
+        assertEquals("token", job.getToken());
+        assertEquals(Arrays.asList("Dev Team", "1234"), job.getRooms());
+        assertEquals("http://jenkins/", job.getBuildServerUrl());
+        assertEquals("Jenkins", job.getSendAs());
+        assertFalse(job.getSmartNotifications());
+        assertTrue(job.getStartNotification());
+        assertSame(global.getRoutingRules(), job.getRoutingRules());
+    }
+
+    @Test
+    public void jobValuesWinOverGlobalValues() {
+        HipChatConfig job = HipChatConfig.forJob(global, "other", "Ops", "https://ci/", "CI", true, false);
+        assertEquals("other", job.getToken());
+        assertEquals(Arrays.asList("Ops"), job.getRooms());
+        assertEquals("https://ci/", job.getBuildServerUrl());
+        assertEquals("CI", job.getSendAs());
+    }
+
+    @Test
+    public void sendAsHasADefault() {
+        HipChatConfig job = HipChatConfig.forJob(HipChatConfig.EMPTY, null, null, null, null, false, false);
+        assertEquals(HipChatConfig.DEFAULT_SEND_AS, job.getSendAs());
+        assertTrue(job.getRooms().isEmpty());
+    }
+}
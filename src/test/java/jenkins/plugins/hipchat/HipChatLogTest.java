@@ -0,0 +1,82 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class HipChatLogTest {
+
+    @Test
+    public void redactsTokens() {
+        assertEquals("https://api.hipchat.com/v1/rooms/message?auth_token=****",
+                HipChatLog.redact("https://api.hipchat.com/v1/rooms/message?auth_token=s3cr3t"));
+        assertEquals("GET /v1/users/list?auth_token=****&format=json failed",
+                HipChatLog.redact("GET /v1/users/list?auth_token=s3cr3t&format=json failed"));
+        assertNull(HipChatLog.redact((String) null));
+    }
+
+    @Test
+    public void redactsThrowables() {
+        Exception e = new IllegalStateException("POST auth_token=s3cr3t failed",
+                new IOException("auth_token=s3cr3t"));
+        Throwable redacted = HipChatLog.redact(e);
+        assertEquals("java.lang.IllegalStateException: POST auth_token=**** failed", redacted.toString());
+        assertEquals("java.io.IOException: auth_token=****", redacted.getCause().toString());
+        assertEquals(e.getStackTrace().length, redacted.getStackTrace().length);
+        assertNull(HipChatLog.redact((Throwable) null));
+    }
+
+    @Test
+    public void summarizesMessages() {
+        assertEquals("<5 chars>", HipChatLog.summarize("hello"));
+    }
+
+    @Test
+    public void rateLimitsRepeatedWarnings() {
+        HipChatLog log = HipChatLog.get(HipChatLog.Category.PUBLISH);
+        Logger logger = log.getLogger();
+        final List<String> messages = new ArrayList<String>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        boolean useParent = logger.getUseParentHandlers();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        try {
+            long now = 1000000000L;
+            assertTrue(log.warnRateLimited("test-room", "failed", new RuntimeException("auth_token=abc"), now));
+            assertFalse(log.warnRateLimited("test-room", "failed", null, now + 1));
+            assertFalse(log.warnRateLimited("test-room", "failed", null, now + 2));
+            assertTrue(log.warnRateLimited("other-room", "failed", null, now + 3));
+            assertTrue(log.warnRateLimited("test-room", "failed", null, now + HipChatLog.RATE_LIMIT_MILLIS));
+
+            assertEquals(3, messages.size());
+            assertEquals("failed: java.lang.RuntimeException: auth_token=****", messages.get(0));
+            assertEquals("failed (2 similar warnings suppressed)", messages.get(2));
+        } finally {
+            logger.removeHandler(handler);
+            logger.setUseParentHandlers(useParent);
+        }
+    }
+}
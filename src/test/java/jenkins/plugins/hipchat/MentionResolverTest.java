@@ -0,0 +1,69 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MentionResolverTest {
+
+    private int refreshes;
+    private MentionResolver resolver;
+
+    @Before
+    public void setUp() {
+        refreshes = 0;
+        resolver = new MentionResolver() {
+            @Override
+            void requestRefresh() {
+                refreshes++;
+            }
+        };
+    }
+
+    @Test
+    public void parsesUserList() {
+        Map<String, String> mentions = MentionResolver.parseUsers(
+                "{\"users\":[{\"user_id\":1,\"name\":\"John Doe\",\"mention_name\":\"JohnDoe\",\"email\":\"John.Doe@example.com\"},"
+                + "{\"user_id\":2,\"name\":\"No Mail\",\"mention_name\":\"NoMail\",\"email\":\"\"}]}");
+        assertEquals(Collections.singletonMap("john.doe@example.com", "JohnDoe"), mentions);
+        assertTrue(MentionResolver.parseUsers("{}").isEmpty());
+    }
+
+    @Test
+    public void looksUpByCaseInsensitiveEmail() {
+        long now = 1000000000L;
+        resolver.load(Collections.singletonMap("john.doe@example.com", "JohnDoe"), now);
+        assertEquals("JohnDoe", resolver.lookup("John.Doe@Example.com", now + 1));
+        assertEquals(0, refreshes);
+    }
+
+    @Test
+    public void repeatedMissesAreCached() {
+        long now = 1000000000L;
+        resolver.load(Collections.<String, String>emptyMap(), now);
+        long later = now + MentionResolver.MIN_REFRESH_INTERVAL;
+        assertNull(resolver.lookup("jane@example.com", later));
+        assertNull(resolver.lookup("jane@example.com", later));
+        assertEquals(1, refreshes);
+    }
+
+    @Test
+    public void missesOnFreshDirectoryDoNotRefresh() {
+        long now = 1000000000L;
+        resolver.load(Collections.<String, String>emptyMap(), now);
+        assertNull(resolver.lookup("jane@example.com", now + 1));
+        assertEquals(0, refreshes);
+    }
+
+    @Test
+    public void stripsLeadingAtFromExplicitMentionName() {
+        assertEquals("JohnDoe", new HipChatUserProperty(" @JohnDoe ").getMentionName());
+        assertNull(new HipChatUserProperty("").getMentionName());
+    }
+}
@@ -0,0 +1,53 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProgressThrottleTest {
+
+    private static final long INTERVAL = 60000L;
+
+    private final ProgressThrottle throttle = new ProgressThrottle();
+
+    @Test
+    public void unknownKeysAreNeverSent() {
+        assertFalse(throttle.tryAcquire("job\nroom", 0, 50, "deploy", INTERVAL, 10));
+    }
+
+    @Test
+    public void waitsForTheMinimumInterval() {
+        throttle.start("job\nroom", 0);
+        assertFalse(throttle.tryAcquire("job\nroom", INTERVAL - 1, 50, "deploy", INTERVAL, 10));
+        assertTrue(throttle.tryAcquire("job\nroom", INTERVAL, 50, "deploy", INTERVAL, 10));
+        assertFalse(throttle.tryAcquire("job\nroom", INTERVAL + 1, 90, "test", INTERVAL, 10));
+    }
+
+    @Test
+    public void requiresAStageChangeOrEnoughProgress() {
+        throttle.start("job\nroom", 0);
+        assertTrue(throttle.tryAcquire("job\nroom", INTERVAL, 20, null, INTERVAL, 10));
+        assertFalse(throttle.tryAcquire("job\nroom", 2 * INTERVAL, 25, null, INTERVAL, 10));
+        assertTrue(throttle.tryAcquire("job\nroom", 3 * INTERVAL, 25, "package", INTERVAL, 10));
+        assertFalse(throttle.tryAcquire("job\nroom", 4 * INTERVAL, 26, "package", INTERVAL, 10));
+        assertTrue(throttle.tryAcquire("job\nroom", 5 * INTERVAL, 35, "package", INTERVAL, 10));
+    }
+
+    @Test
+    public void restartingAKeyKeepsItsState() {
+        throttle.start("job\nroom", 0);
+        throttle.start("job\nroom", INTERVAL);
+        assertTrue(throttle.tryAcquire("job\nroom", INTERVAL, 50, null, INTERVAL, 10));
+        throttle.finish("job\nroom");
+        assertEquals(0, throttle.size());
+    }
+
+    @Test
+    public void percentCompleteIsCapped() {
+        assertEquals(-1, ProgressTracker.percentComplete(-1, 1000));
+        assertEquals(50, ProgressTracker.percentComplete(2000, 1000));
+        assertEquals(99, ProgressTracker.percentComplete(1000, 5000));
+    }
+}
@@ -0,0 +1,156 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RoutingRulesTest {
+
+    private static RoutingContext context(String result, String job, String branch, String label, String cause, long duration) {
+        return new RoutingContext(result, job, branch,
+                label == null ? null : new HashSet<String>(Arrays.asList(label)),
+                cause == null ? null : Collections.singletonList(cause), duration);
+    }
+
+    @Test
+    public void emptyTextHasNoRules() {
+        assertTrue(RoutingRules.parse(null).isEmpty());
+        assertTrue(RoutingRules.parse(" \n# comment\n").isEmpty());
+    }
+
+    @Test
+    public void matchesOnResultAndJobGlob() {
+        RoutingRules rules = RoutingRules.parse("result=FAILURE job=release-* room=oncall color=red notify=true");
+        List<RoutingRule> matched = rules.match(context("FAILURE", "release-1.0", null, null, null, 0));
+        assertEquals(1, matched.size());
+        assertEquals(Arrays.asList("oncall"), matched.get(0).getRooms());
+        assertEquals("red", matched.get(0).getColor());
+        assertEquals(Boolean.TRUE, matched.get(0).getNotify());
+
+        assertTrue(rules.match(context("SUCCESS", "release-1.0", null, null, null, 0)).isEmpty());
+        assertTrue(rules.match(context("FAILURE", "nightly", null, null, null, 0)).isEmpty());
+    }
+
+    @Test
+    public void keepsRuleOrderAcrossExactAndGlobJobs() {
+        RoutingRules rules = RoutingRules.parse(
+                "job=* room=all\n" +
+                "job=core room=core\n" +
+                "result=SUCCESS room=green\n");
+        List<RoutingRule> matched = rules.match(context("SUCCESS", "core", null, null, null, 0));
+        assertEquals(3, matched.size());
+        assertEquals("all", matched.get(0).getRooms().get(0));
+        assertEquals("core", matched.get(1).getRooms().get(0));
+        assertEquals("green", matched.get(2).getRooms().get(0));
+        assertNull(matched.get(2).getNotify());
+    }
+
+    @Test
+    public void indexesManyJobGlobs() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("job=team").append(i).append("-* room=room").append(i).append('\n');
+        }
+        text.append("job=*-release room=releases\n");
+        text.append("job=team42-a*,team42-* room=twice\n");
+        RoutingRules rules = RoutingRules.parse(text.toString());
+
+        List<RoutingRule> matched = rules.match(context("SUCCESS", "team42-app-release", null, null, null, 0));
+        assertEquals(3, matched.size());
+        assertEquals("room42", matched.get(0).getRooms().get(0));
+        assertEquals("releases", matched.get(1).getRooms().get(0));
+        assertEquals("twice", matched.get(2).getRooms().get(0));
+
+        assertEquals("room7", rules.match(context("SUCCESS", "team7-x", null, null, null, 0)).get(0).getRooms().get(0));
+        assertTrue(rules.match(context("SUCCESS", "team", null, null, null, 0)).isEmpty());
+        assertTrue(rules.match(context("SUCCESS", "other", null, null, null, 0)).isEmpty());
+    }
+
+    @Test
+    public void matchesBranchLabelCauseAndDuration() {
+        RoutingRules rules = RoutingRules.parse(
+                "branch=master label=linux* cause=SCM* minDuration=1m maxDuration=1h room=slow");
+        assertEquals(1, rules.match(context("SUCCESS", "a", "master", "linux-64", "SCMTriggerCause", 120000)).size());
+        assertTrue(rules.match(context("SUCCESS", "a", null, "linux-64", "SCMTriggerCause", 120000)).isEmpty());
+        assertTrue(rules.match(context("SUCCESS", "a", "master", "windows", "SCMTriggerCause", 120000)).isEmpty());
+        assertTrue(rules.match(context("SUCCESS", "a", "master", "linux-64", "UserIdCause", 120000)).isEmpty());
+        assertTrue(rules.match(context("SUCCESS", "a", "master", "linux-64", "SCMTriggerCause", 1000)).isEmpty());
+    }
+
+    @Test
+    public void indexesLabelCauseAndBranchRules() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("label=node").append(i).append(" room=label").append(i).append('\n');
+            text.append("cause=Trigger").append(i).append("Cause* room=cause").append(i).append('\n');
+            text.append("branch=feature/").append(i).append("-* room=branch").append(i).append('\n');
+        }
+        text.append("label=docker,linux* branch=master room=linux\n");
+        text.append("minDuration=1h room=slow\n");
+        RoutingRules rules = RoutingRules.parse(text.toString());
+
+        List<RoutingRule> matched = rules.match(new RoutingContext("SUCCESS", "a", "feature/7-x",
+                new HashSet<String>(Arrays.asList("node3", "linux-64")), Arrays.asList("Trigger12Cause"), 0));
+        assertEquals(3, matched.size());
+        assertEquals("label3", matched.get(0).getRooms().get(0));
+        assertEquals("branch7", matched.get(1).getRooms().get(0));
+        assertEquals("cause12", matched.get(2).getRooms().get(0));
+
+        matched = rules.match(context("SUCCESS", "a", "master", "docker", null, 2 * 3600000L));
+        assertEquals(2, matched.size());
+        assertEquals("linux", matched.get(0).getRooms().get(0));
+        assertEquals("slow", matched.get(1).getRooms().get(0));
+
+        assertTrue(rules.match(context("SUCCESS", "a", "develop", "linux-64", null, 0)).isEmpty());
+    }
+
+    @Test
+    public void startedEventsOnlyMatchStartedRules() {
+        RoutingRules rules = RoutingRules.parse("result=STARTED room=starts");
+        assertEquals(1, rules.match(context(RoutingContext.STARTED, "a", null, null, null, 0)).size());
+        assertTrue(rules.match(context("SUCCESS", "a", null, null, null, 0)).isEmpty());
+    }
+
+    @Test
+    public void globsAreNotRegularExpressions() {
+        RoutingRules rules = RoutingRules.parse("job=a.b* room=r");
+        assertEquals(1, rules.match(context("SUCCESS", "a.b-c", null, null, null, 0)).size());
+        assertTrue(rules.match(context("SUCCESS", "axb", null, null, null, 0)).isEmpty());
+    }
+
+    @Test
+    public void normalizesBranchNames() {
+        assertEquals("master", RoutingContext.normalizeBranch("origin/master"));
+        assertEquals("feature/x", RoutingContext.normalizeBranch("refs/heads/feature/x"));
+        assertNull(RoutingContext.normalizeBranch(null));
+    }
+
+    @Test
+    public void rejectsInvalidRules() {
+        assertInvalid("result=FAILURE");
+        assertInvalid("result=BROKEN room=a");
+        assertInvalid("room=a color=blue");
+        assertInvalid("room=a minDuration=soon");
+        assertInvalid("room=a owner=me");
+        assertInvalid("room=a notify=yes");
+        assertInvalid("room=a notify=1");
+        assertInvalid("room");
+    }
+
+    private static void assertInvalid(String text) {
+        try {
+            RoutingRules.parse(text);
+            assertFalse("expected failure for " + text, true);
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().startsWith("Routing rule on line 1"));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ThroughputReportTest {
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void reportsRateAndPercentiles() {
+        ThroughputReport report = new ThroughputReport("test", 0);
+        for (int i = 1; i <= 100; i++) {
+            report.delivered("room", ms(i), i % 25 != 0);
+        }
+        report.finish(ms(2000));
+
+        assertEquals(100, report.getMessages());
+        assertEquals(4, report.getErrors());
+        assertEquals(2000, report.getElapsedMillis());
+        assertEquals(50.0, report.getMessagesPerSecond(), 0.001);
+        assertEquals(50, report.getLatencyMillis(50));
+        assertEquals(90, report.getLatencyMillis(90));
+        assertEquals(99, report.getLatencyMillis(99));
+        assertEquals(100, report.getLatencyMillis(100));
+        assertEquals(1, report.getLatencyMillis(0));
+        assertEquals("test: 100 messages in 2.0 s (50.00 msg/s), 4 errors, latency p50 50 ms, p90 90 ms, p99 99 ms, max 100 ms",
+                report.toString());
+    }
+
+    @Test
+    public void appendsNote() {
+        ThroughputReport report = new ThroughputReport("replay", 0);
+        report.setNote("3 more builds not replayed");
+        report.finish(0);
+        assertEquals("replay: 0 messages in 0.0 s (0.00 msg/s), 0 errors, latency p50 0 ms, p90 0 ms, p99 0 ms, max 0 ms"
+                + " (3 more builds not replayed)", report.toString());
+    }
+
+    @Test
+    public void emptyReportHasNoLatency() {
+        ThroughputReport report = new ThroughputReport("empty", 0);
+        report.finish(0);
+        assertEquals(0, report.getLatencyMillis(99));
+        assertEquals(0.0, report.getMessagesPerSecond(), 0.001);
+    }
+}
@@ -0,0 +1,54 @@
+package jenkins.plugins.hipchat;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TopKTest {
+
+    @Test
+    public void keepsHeaviestKeysWithinCapacity() {
+        TopK top = new TopK(2);
+        for (int i = 0; i < 10; i++) {
+            top.add("a", 1);
+        }
+        for (int i = 0; i < 5; i++) {
+            top.add("b", 1);
+        }
+        top.add("c", 1);
+        top.add("d", 1);
+        assertEquals(2, top.size());
+        List<TopK.Entry> entries = top.top(5);
+        assertEquals("a", entries.get(0).getKey());
+        assertEquals(10, entries.get(0).getValue());
+    }
+
+    @Test
+    public void keepsLargestValuesForMax() {
+        TopK top = new TopK(2);
+        top.max("a", 10);
+        top.max("b", 30);
+        top.max("a", 5);
+        top.max("c", 20);
+        top.max("d", 1);
+        List<TopK.Entry> entries = top.top(5);
+        assertEquals(2, entries.size());
+        assertEquals("b", entries.get(0).getKey());
+        assertEquals("c", entries.get(1).getKey());
+        assertEquals(20, entries.get(1).getValue());
+    }
+
+    @Test
+    public void mergesSummaries() {
+        TopK left = new TopK(3);
+        left.add("a", 2);
+        TopK right = new TopK(3);
+        right.add("a", 3);
+        right.add("b", 1);
+        left.addAll(right);
+        assertEquals(5, left.top(1).get(0).getValue());
+        assertEquals(2, left.size());
+    }
+}